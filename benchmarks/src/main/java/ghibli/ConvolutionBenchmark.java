@@ -0,0 +1,59 @@
+package ghibli;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import org.openjdk.jmh.annotations.*;
+
+// Convolution reverb at playback block size against a decaying-noise IR. Realtime factor is the
+// samples counter divided by sampleRate x channels.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConvolutionBenchmark {
+    @Param({"1", "5"})
+    public int irSeconds;
+
+    private ConvolutionProcessor processor;
+    private float[][] block;
+
+    @Setup(Level.Trial)
+    public void setUp(SyntheticAudio audio) throws IOException {
+        AudioFormat format = new AudioFormat(audio.sampleRate, 16, 2, true, false);
+        int frames = audio.sampleRate * irSeconds;
+        byte[] pcm = new byte[frames * 4];
+        Random random = new Random(7);
+        for (int i = 0; i < frames * 2; i++) {
+            int sample = (int) (random.nextGaussian() * 8000 * Math.exp(-3.0 * (i / 2) / frames));
+            sample = Math.max(-32768, Math.min(32767, sample));
+            pcm[2 * i] = (byte) sample;
+            pcm[2 * i + 1] = (byte) (sample >> 8);
+        }
+        File file = File.createTempFile("bench-ir-", ".wav");
+        file.deleteOnExit();
+        AudioSystem.write(new AudioInputStream(new ByteArrayInputStream(pcm), format, frames),
+                AudioFileFormat.Type.WAVE, file);
+        ImpulseResponse ir = ImpulseResponse.load(file);
+        EffectSettings settings = new EffectSettings(1.0, 1.0, false, 200, 0.5, false, 0, false, 2000,
+                true, 0.5, ir, Resampler.Quality.LINEAR, false, 0);
+        processor = new ConvolutionProcessor(audio.channels, audio.sampleRate, settings);
+        block = new float[audio.channels][PlaybackEngine.DEFAULT_BLOCK_SIZE];
+    }
+
+    @Benchmark
+    public float[][] block(SyntheticAudio audio, SampleCounter counter) {
+        PcmConverter.toFloat(audio.pcm, 0, block, 0, block[0].length);
+        processor.process(block, block[0].length);
+        counter.samples += (long) block[0].length * block.length;
+        return block;
+    }
+}
@@ -0,0 +1,62 @@
+package ghibli;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+// Load path: the original decode-into-one-byte[] against opening a mapped source and reading it
+// in windows, plus the PCM16 -> float kernel every render starts with.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DecodeBenchmark {
+    private static final int BLOCK = RenderEngine.DEFAULT_BLOCK_SIZE;
+
+    @Benchmark
+    public byte[] legacyLoad(SyntheticAudio audio, SampleCounter counter) throws Exception {
+        AudioInputStream inStream = AudioSystem.getAudioInputStream(audio.wavFile);
+        AudioFormat baseFormat = inStream.getFormat();
+        AudioFormat decodedFormat = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, baseFormat.getSampleRate(),
+                16, baseFormat.getChannels(), baseFormat.getChannels() * 2, baseFormat.getSampleRate(), false);
+        AudioInputStream din = AudioSystem.getAudioInputStream(decodedFormat, inStream);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int bytesRead;
+        while ((bytesRead = din.read(buffer)) != -1) {
+            out.write(buffer, 0, bytesRead);
+        }
+        din.close();
+        counter.samples += audio.sampleCount();
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public void mappedLoad(SyntheticAudio audio, SampleCounter counter, Blackhole bh) throws Exception {
+        try (SampleSource source = MappedSampleSource.open(audio.wavFile)) {
+            byte[] window = new byte[BLOCK * source.getFormat().getFrameSize()];
+            for (long frame = 0; frame < source.getFrameCount(); frame += BLOCK) {
+                bh.consume(source.read(frame, window, 0, BLOCK));
+            }
+            bh.consume(window);
+        }
+        counter.samples += audio.sampleCount();
+    }
+
+    @Benchmark
+    public float[][] pcmToFloat(SyntheticAudio audio, SampleCounter counter) {
+        int frameSize = audio.format.getFrameSize();
+        int frames = audio.pcm.length / frameSize;
+        float[][] block = new float[audio.channels][BLOCK];
+        for (int start = 0; start < frames; start += BLOCK) {
+            PcmConverter.toFloat(audio.pcm, start * frameSize, block, 0, Math.min(BLOCK, frames - start));
+        }
+        counter.samples += audio.sampleCount();
+        return block;
+    }
+}
@@ -0,0 +1,50 @@
+package ghibli;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+// Full render with every effect enabled at speed 1.0: per-sample applyEffects against the block
+// engine, plus the effect chain alone on float blocks.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EffectsBenchmark {
+    private EffectSettings settings;
+    private float[][] block;
+
+    @Setup(Level.Trial)
+    public void setUp(SyntheticAudio audio) {
+        settings = SyntheticAudio.allEffects(1.0);
+        block = new float[audio.channels][RenderEngine.DEFAULT_BLOCK_SIZE];
+    }
+
+    @Benchmark
+    public byte[] legacy(SyntheticAudio audio, SampleCounter counter) {
+        counter.samples += audio.sampleCount();
+        return LegacyRender.processEntireAudio(audio.pcm, audio.format, settings);
+    }
+
+    @Benchmark
+    public byte[] engine(SyntheticAudio audio, SampleCounter counter) {
+        RenderEngine engine = new RenderEngine(audio.source, settings, RenderEngine.DEFAULT_BLOCK_SIZE);
+        int frames = (int) RenderEngine.getOutputFrameCount(audio.source, settings.speed);
+        byte[] out = new byte[frames * audio.format.getFrameSize()];
+        engine.renderPcm(out, 0, frames);
+        counter.samples += audio.sampleCount();
+        return out;
+    }
+
+    @Benchmark
+    public float[][] chainOnly(SyntheticAudio audio, SampleCounter counter) {
+        EffectChain chain = EffectChain.fromSettings(settings, audio.format);
+        long frames = audio.source.getFrameCount();
+        for (long done = 0; done < frames; done += block[0].length) {
+            chain.process(block, (int) Math.min(block[0].length, frames - done));
+        }
+        counter.samples += audio.sampleCount();
+        return block;
+    }
+}
@@ -0,0 +1,64 @@
+package ghibli;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+// Scalar against Vector API kernels, one render block per operation.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class KernelBenchmark {
+    private static final int FRAMES = RenderEngine.DEFAULT_BLOCK_SIZE;
+
+    @Param({"scalar", "vector"})
+    public String kernels;
+
+    private SampleKernels impl;
+    private float[][] block;
+    private byte[] pcm;
+
+    @Setup(Level.Trial)
+    public void setUp(SyntheticAudio audio) {
+        impl = kernels.equals("vector") ? new VectorKernels() : new ScalarKernels();
+        block = new float[audio.channels][FRAMES];
+        pcm = new byte[FRAMES * audio.format.getFrameSize()];
+        System.arraycopy(audio.pcm, 0, pcm, 0, pcm.length);
+        impl.toFloat(pcm, 0, block, 0, FRAMES);
+    }
+
+    @Benchmark
+    public float[][] decode(SampleCounter counter) {
+        impl.toFloat(pcm, 0, block, 0, FRAMES);
+        counter.samples += (long) FRAMES * block.length;
+        return block;
+    }
+
+    @Benchmark
+    public byte[] encode(SampleCounter counter) {
+        impl.toPcm16(block, 0, FRAMES, pcm, 0);
+        counter.samples += (long) FRAMES * block.length;
+        return pcm;
+    }
+
+    // A unity ramp keeps the block from drifting towards zero or overflow across invocations.
+    @Benchmark
+    public float[][] gainRamp(SampleCounter counter) {
+        for (float[] samples : block) {
+            impl.scaleRamp(samples, 0, FRAMES, 1f, 0f);
+        }
+        counter.samples += (long) FRAMES * block.length;
+        return block;
+    }
+
+    @Benchmark
+    public float[][] clip(SampleCounter counter) {
+        for (float[] samples : block) {
+            impl.clip(samples, 0, FRAMES, 0.7f);
+        }
+        counter.samples += (long) FRAMES * block.length;
+        return block;
+    }
+}
@@ -0,0 +1,104 @@
+package ghibli;
+
+import java.io.ByteArrayOutputStream;
+import javax.sound.sampled.AudioFormat;
+
+// The per-sample integer render path as it was before the block engine, kept verbatim as the
+// baseline the engine benchmarks are compared against.
+final class LegacyRender {
+    private LegacyRender() {
+    }
+
+    static int applyEffects(int sample, int ch, boolean echoEnabled, double echoDecay,
+                            int[][] echoBuffer, int[] echoBufferIndex,
+                            boolean distortionEnabled, double distortionThreshold,
+                            boolean lowPassEnabled, double[] prevSample, double alpha) {
+        if (echoEnabled && echoBuffer != null && echoBufferIndex != null) {
+            int delayed = echoBuffer[ch][echoBufferIndex[ch]];
+            sample = sample + (int) (echoDecay * delayed);
+            echoBuffer[ch][echoBufferIndex[ch]] = sample;
+            echoBufferIndex[ch] = (echoBufferIndex[ch] + 1) % echoBuffer[ch].length;
+        }
+        if (distortionEnabled) {
+            if (sample > distortionThreshold) sample = (int) distortionThreshold;
+            if (sample < -distortionThreshold) sample = (int) -distortionThreshold;
+        }
+        if (lowPassEnabled) {
+            sample = (int) (alpha * sample + (1 - alpha) * prevSample[ch]);
+            prevSample[ch] = sample;
+        }
+        if (sample > 32767) sample = 32767;
+        if (sample < -32768) sample = -32768;
+        return sample;
+    }
+
+    // processEntireAudio: interpolation + applyEffects per sample into a ByteArrayOutputStream.
+    static byte[] processEntireAudio(byte[] audioBytes, AudioFormat format, EffectSettings s) {
+        int channels = format.getChannels();
+        int sampleSizeBytes = format.getSampleSizeInBits() / 8;
+        int frameSize = format.getFrameSize();
+        int totalFrames = audioBytes.length / frameSize;
+        int newFrameCount = (int) (totalFrames / s.speed);
+        ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+
+        int echoDelaySamples = (int) (s.echoDelayMs * format.getSampleRate() / 1000.0);
+        int[][] echoBuffer = null;
+        int[] echoBufferIndex = null;
+        if (s.echoEnabled) {
+            echoBuffer = new int[channels][echoDelaySamples];
+            echoBufferIndex = new int[channels];
+        }
+        double distortionThreshold = 32767 * (1.0 - s.distortionLevel);
+        double[] prevSample = new double[channels];
+        double dt = 1.0 / format.getSampleRate();
+        double RC = 1.0 / (2 * Math.PI * s.lowPassCutoff);
+        double alpha = dt / (RC + dt);
+
+        for (int i = 0; i < newFrameCount; i++) {
+            double inFramePos = i * s.speed;
+            int frameIndex1 = (int) Math.floor(inFramePos);
+            int frameIndex2 = (frameIndex1 + 1 < totalFrames) ? frameIndex1 + 1 : frameIndex1;
+            double weight = inFramePos - frameIndex1;
+            for (int ch = 0; ch < channels; ch++) {
+                int offset1 = frameIndex1 * frameSize + ch * sampleSizeBytes;
+                int offset2 = frameIndex2 * frameSize + ch * sampleSizeBytes;
+                int sample1 = ((audioBytes[offset1 + 1] << 8) | (audioBytes[offset1] & 0xff));
+                int sample2 = ((audioBytes[offset2 + 1] << 8) | (audioBytes[offset2] & 0xff));
+                double interpolated = sample1 * (1.0 - weight) + sample2 * weight;
+                int sample = (int) (interpolated * s.volume);
+                sample = applyEffects(sample, ch, s.echoEnabled, s.echoDecay, echoBuffer, echoBufferIndex,
+                                      s.distortionEnabled, distortionThreshold,
+                                      s.lowPassEnabled, prevSample, alpha);
+                outStream.write(sample & 0xff);
+                outStream.write((sample >> 8) & 0xff);
+            }
+        }
+        return outStream.toByteArray();
+    }
+
+    // Interpolation only, no effects: the resampling half of the loop above.
+    static byte[] resample(byte[] audioBytes, AudioFormat format, double speed) {
+        EffectSettings plain = new EffectSettings(speed, 1.0, false, 200, 0.5, false, 0, false, 2000, false, 0.3, null,
+                Resampler.Quality.LINEAR, false, 0);
+        return processEntireAudio(audioBytes, format, plain);
+    }
+
+    // WaveformPanel.setAudioData: one averaged absolute amplitude per frame.
+    static int[] amplitudes(byte[] audioData, AudioFormat format) {
+        int channels = format.getChannels();
+        int sampleSizeBytes = format.getSampleSizeInBits() / 8;
+        int frameSize = format.getFrameSize();
+        int totalFrames = audioData.length / frameSize;
+        int[] amplitudes = new int[totalFrames];
+        for (int i = 0; i < totalFrames; i++) {
+            int sum = 0;
+            for (int ch = 0; ch < channels; ch++) {
+                int offset = i * frameSize + ch * sampleSizeBytes;
+                int sample = ((audioData[offset + 1] << 8) | (audioData[offset] & 0xff));
+                sum += Math.abs(sample);
+            }
+            amplitudes[i] = sum / channels;
+        }
+        return amplitudes;
+    }
+}
@@ -0,0 +1,36 @@
+package ghibli;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+// Speed control: the original per-sample interpolation loop against the block Resampler.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ResampleBenchmark {
+    @Param({"0.75", "1.5"})
+    public double speed;
+
+    @Benchmark
+    public byte[] legacy(SyntheticAudio audio, SampleCounter counter) {
+        counter.samples += audio.sampleCount();
+        return LegacyRender.resample(audio.pcm, audio.format, speed);
+    }
+
+    @Benchmark
+    public float[][] engine(SyntheticAudio audio, SampleCounter counter) {
+        int block = RenderEngine.DEFAULT_BLOCK_SIZE;
+        Resampler resampler = new Resampler(audio.source);
+        resampler.setSpeed(speed);
+        float[][] out = new float[audio.channels][block];
+        long frames = RenderEngine.getOutputFrameCount(audio.source, speed);
+        for (long done = 0; done < frames; done += block) {
+            resampler.process(out, (int) Math.min(block, frames - done));
+        }
+        counter.samples += audio.sampleCount();
+        return out;
+    }
+}
@@ -0,0 +1,42 @@
+package ghibli;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+// Cost of each resampling quality mode, one block per operation as playback pulls it.
+// Nanoseconds per sample is 1e9 divided by the samples counter.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ResampleQualityBenchmark {
+    @Param({"LINEAR", "CUBIC", "SINC"})
+    public String quality;
+
+    @Param({"0.75", "1.5", "2.0"})
+    public double speed;
+
+    private Resampler resampler;
+    private float[][] block;
+    private long frames;
+
+    @Setup(Level.Trial)
+    public void setUp(SyntheticAudio audio) {
+        resampler = new Resampler(audio.source);
+        resampler.setSpeed(speed);
+        resampler.setQuality(Resampler.Quality.valueOf(quality));
+        block = new float[audio.channels][PlaybackEngine.DEFAULT_BLOCK_SIZE];
+        frames = RenderEngine.getOutputFrameCount(audio.source, speed);
+    }
+
+    @Benchmark
+    public float[][] block(SyntheticAudio audio, SampleCounter counter) {
+        int n = PlaybackEngine.DEFAULT_BLOCK_SIZE;
+        if (resampler.getOutputFrame() + n > frames) resampler.seek(0);
+        resampler.process(block, n);
+        counter.samples += (long) n * audio.channels;
+        return block;
+    }
+}
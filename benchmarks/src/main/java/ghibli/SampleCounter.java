@@ -0,0 +1,15 @@
+package ghibli;
+
+import org.openjdk.jmh.annotations.*;
+
+// Reports processed samples (frames x channels) as a rate next to the per-operation score.
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class SampleCounter {
+    public long samples;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        samples = 0;
+    }
+}
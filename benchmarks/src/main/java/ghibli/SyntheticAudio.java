@@ -0,0 +1,64 @@
+package ghibli;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import org.openjdk.jmh.annotations.*;
+
+// Ten seconds of deterministic tone-plus-noise PCM in each benchmarked layout, in memory and as a
+// WAV file on disk for the load path.
+@State(Scope.Benchmark)
+public class SyntheticAudio {
+    public static final int SECONDS = 10;
+
+    @Param({"1", "2"})
+    public int channels;
+
+    @Param({"44100", "48000", "96000"})
+    public int sampleRate;
+
+    public AudioFormat format;
+    public byte[] pcm;
+    public SampleSource source;
+    public File wavFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        format = new AudioFormat(sampleRate, 16, channels, true, false);
+        int frames = sampleRate * SECONDS;
+        pcm = new byte[frames * format.getFrameSize()];
+        Random random = new Random(42);
+        for (int i = 0; i < frames * channels; i++) {
+            double t = (double) (i / channels) / sampleRate;
+            int sample = (int) (12000 * Math.sin(2 * Math.PI * 440 * t) + random.nextGaussian() * 2000);
+            sample = Math.max(-32768, Math.min(32767, sample));
+            pcm[2 * i] = (byte) sample;
+            pcm[2 * i + 1] = (byte) (sample >> 8);
+        }
+        source = new ByteArraySampleSource(pcm, format);
+        wavFile = File.createTempFile("bench-", ".wav");
+        wavFile.deleteOnExit();
+        AudioSystem.write(new AudioInputStream(new ByteArrayInputStream(pcm), format, frames),
+                AudioFileFormat.Type.WAVE, wavFile);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        wavFile.delete();
+    }
+
+    public long sampleCount() {
+        return (long) pcm.length / 2;
+    }
+
+    // Settings with every effect enabled, so each stage is on the measured path.
+    public static EffectSettings allEffects(double speed) {
+        return new EffectSettings(speed, 0.8, true, 200, 0.5, true, 0.3, true, 2000, false, 0.3, null,
+                Resampler.Quality.LINEAR, false, 0);
+    }
+}
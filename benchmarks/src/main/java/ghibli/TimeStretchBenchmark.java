@@ -0,0 +1,44 @@
+package ghibli;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+// Pitch-preserving time-stretch at playback block size. Realtime factor is the samples counter
+// divided by sampleRate x channels.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TimeStretchBenchmark {
+    @Param({"0.75", "1.5"})
+    public double tempo;
+
+    @Param({"0", "4"})
+    public int semitones;
+
+    private TimeStretcher stretcher;
+    private float[][] block;
+    private long end;
+
+    @Setup(Level.Trial)
+    public void setUp(SyntheticAudio audio) {
+        EffectSettings settings = new EffectSettings(tempo, 1.0, false, 200, 0.5, false, 0, false, 2000,
+                false, 0.3, null, Resampler.Quality.SINC, true, semitones);
+        stretcher = new TimeStretcher(audio.source);
+        stretcher.update(settings);
+        stretcher.seekInput(0);
+        block = new float[audio.channels][PlaybackEngine.DEFAULT_BLOCK_SIZE];
+        end = audio.source.getFrameCount() - audio.sampleRate;
+    }
+
+    @Benchmark
+    public float[][] block(SyntheticAudio audio, SampleCounter counter) {
+        int n = PlaybackEngine.DEFAULT_BLOCK_SIZE;
+        if (stretcher.getPosition() > end) stretcher.seekInput(0);
+        stretcher.process(block, n);
+        counter.samples += (long) n * audio.channels;
+        return block;
+    }
+}
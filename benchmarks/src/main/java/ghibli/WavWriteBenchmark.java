@@ -0,0 +1,49 @@
+package ghibli;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import org.openjdk.jmh.annotations.*;
+
+// Save path end to end, render included, into a temp file: the original render-to-byte[] +
+// AudioSystem.write against the streaming FileChannel export. Use -prof gc to compare heap churn.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WavWriteBenchmark {
+    private final EffectSettings settings = SyntheticAudio.allEffects(1.0);
+    private File outFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        outFile = File.createTempFile("bench-out-", ".wav");
+        outFile.deleteOnExit();
+    }
+
+    @Benchmark
+    public int legacy(SyntheticAudio audio, SampleCounter counter) throws Exception {
+        byte[] processed = LegacyRender.processEntireAudio(audio.pcm, audio.format, settings);
+        AudioInputStream stream = new AudioInputStream(new ByteArrayInputStream(processed), audio.format,
+                processed.length / audio.format.getFrameSize());
+        counter.samples += audio.sampleCount();
+        return AudioSystem.write(stream, AudioFileFormat.Type.WAVE, outFile);
+    }
+
+    @Benchmark
+    public long streaming(SyntheticAudio audio, SampleCounter counter) throws Exception {
+        long frames = RenderEngine.getOutputFrameCount(audio.source, settings.speed);
+        try (WavWriter out = WavWriter.create(outFile.toPath(), audio.format)) {
+            new RenderEngine(audio.source, settings, RenderEngine.DEFAULT_BLOCK_SIZE)
+                    .renderTo(out, frames, RenderMonitor.NONE);
+            counter.samples += audio.sampleCount();
+            return out.getDataLength();
+        }
+    }
+}
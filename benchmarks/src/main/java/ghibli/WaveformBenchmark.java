@@ -0,0 +1,24 @@
+package ghibli;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+// Waveform analysis: the original full-length amplitude array against the min/max peak pyramid.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WaveformBenchmark {
+    @Benchmark
+    public int[] legacy(SyntheticAudio audio, SampleCounter counter) {
+        counter.samples += audio.sampleCount();
+        return LegacyRender.amplitudes(audio.pcm, audio.format);
+    }
+
+    @Benchmark
+    public PeakIndex peakIndex(SyntheticAudio audio, SampleCounter counter) {
+        counter.samples += audio.sampleCount();
+        return PeakIndex.build(audio.source);
+    }
+}
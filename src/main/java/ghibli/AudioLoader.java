@@ -0,0 +1,137 @@
+package ghibli;
+
+import java.io.File;
+import java.util.concurrent.CancellationException;
+import javax.swing.SwingUtilities;
+
+// Loads an audio file on a background thread. The source is handed out as soon as the file is
+// open: WAV is mapped in place, anything else grows chunk by chunk as DecodedSampleSource decodes
+// it, so playback can start right away. The peak index is built in the same pass and published
+// as partial snapshots, so the waveform fills in while the file loads; a cached index is shown
+// immediately instead. cancel() stops the pass between chunks.
+class AudioLoader {
+    // How often partial waveforms are published; each one copies the index arrays.
+    private static final long PUBLISH_INTERVAL_NANOS = 100_000_000L;
+
+    interface Listener {
+        // All callbacks run on the EDT. opened comes first unless the file can't be opened at all;
+        // then progress, then exactly one of finished, cancelled or failed. The source belongs to
+        // the listener from opened on, also when loading is cancelled or fails afterwards: it may
+        // be playing, so only the listener knows when it can be closed.
+        void opened(SampleSource source, PeakIndex cachedOverview);
+
+        // partial is null while a cached overview is in use. expectedFrames is -1 if unknown.
+        void progress(PeakIndex partial, long framesLoaded, long expectedFrames);
+
+        void finished(PeakIndex overview, Stats stats);
+
+        void cancelled();
+
+        void failed(Exception e);
+    }
+
+    static class Stats {
+        final long inputBytes;
+        final double audioSeconds;
+        final long loadNanos;
+        final long firstWaveformNanos;  // load start to the first waveform handed to the listener
+
+        Stats(long inputBytes, double audioSeconds, long loadNanos, long firstWaveformNanos) {
+            this.inputBytes = inputBytes;
+            this.audioSeconds = audioSeconds;
+            this.loadNanos = loadNanos;
+            this.firstWaveformNanos = firstWaveformNanos;
+        }
+
+        @Override
+        public String toString() {
+            double seconds = loadNanos / 1e9;
+            return String.format("Loaded in %.2f s (%.1f MB/s, %.0fx realtime), first waveform after %.0f ms",
+                    seconds, inputBytes / 1e6 / seconds, audioSeconds / seconds, firstWaveformNanos / 1e6);
+        }
+    }
+
+    private final File file;
+    private final PeakCache peakCache;
+    private final Listener listener;
+    private volatile boolean cancelled;
+
+    public AudioLoader(File file, PeakCache peakCache, Listener listener) {
+        this.file = file;
+        this.peakCache = peakCache;
+        this.listener = listener;
+    }
+
+    public void start() {
+        new Thread(this::run, "audio-loader").start();
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    private void run() {
+        long start = System.nanoTime();
+        long firstWaveform = 0;
+        SampleSource source = null;
+        boolean handedOver = false;
+        try {
+            PeakIndex stored = peakCache.load(file);
+            MappedSampleSource mapped = MappedSampleSource.openMapped(file);
+            // An entry that doesn't match a mapped file's length is stale; a decoded file's length
+            // is only known at the end, so that check waits until then.
+            PeakIndex cached = stored != null && mapped != null && stored.getFrameCount() != mapped.getFrameCount()
+                    ? null : stored;
+            DecodedSampleSource decoder = mapped == null ? DecodedSampleSource.open(file) : null;
+            source = mapped != null ? mapped : decoder;
+            long expectedFrames = mapped != null ? mapped.getFrameCount() : decoder.getExpectedFrames();
+            SampleSource opened = source;
+            SwingUtilities.invokeLater(() -> listener.opened(opened, cached == null ? null : cached.withSource(opened)));
+            handedOver = true;
+            if (cached != null) firstWaveform = System.nanoTime() - start;
+
+            // A mapped file whose index is cached is complete as it stands.
+            boolean index = cached == null || decoder != null;
+            PeakIndex.Builder builder = new PeakIndex.Builder(source.getChannels(), expectedFrames);
+            byte[] window = new byte[DecodedSampleSource.CHUNK_FRAMES * source.getFormat().getFrameSize()];
+            long lastPublish = 0;
+            while (index) {
+                if (cancelled) throw new CancellationException();
+                long indexed = builder.getFrameCount();
+                long available = source.getFrameCount();
+                if (indexed < available) {
+                    int frames = (int) Math.min(DecodedSampleSource.CHUNK_FRAMES, available - indexed);
+                    builder.append(window, source.read(indexed, window, 0, frames));
+                } else if (decoder == null || !decoder.decodeChunk()) {
+                    break;
+                }
+                long now = System.nanoTime();
+                if (now - lastPublish >= PUBLISH_INTERVAL_NANOS) {
+                    lastPublish = now;
+                    PeakIndex partial = cached == null ? builder.build(source) : null;
+                    long loaded = builder.getFrameCount();
+                    SwingUtilities.invokeLater(() -> listener.progress(partial, loaded, expectedFrames));
+                    if (firstWaveform == 0) firstWaveform = System.nanoTime() - start;
+                }
+            }
+
+            PeakIndex overview;
+            if (cached != null && cached.getFrameCount() == source.getFrameCount()) {
+                overview = cached.withSource(source);
+            } else {
+                overview = builder.build(source);
+                peakCache.store(file, overview);
+            }
+            long loadNanos = System.nanoTime() - start;
+            if (firstWaveform == 0) firstWaveform = loadNanos;
+            double audioSeconds = source.getFrameCount() / source.getFormat().getSampleRate();
+            Stats stats = new Stats(file.length(), audioSeconds, loadNanos, firstWaveform);
+            SwingUtilities.invokeLater(() -> listener.finished(overview, stats));
+        } catch (CancellationException e) {
+            SwingUtilities.invokeLater(listener::cancelled);
+        } catch (Exception e) {
+            if (source != null && !handedOver) source.close();
+            SwingUtilities.invokeLater(() -> listener.failed(e));
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package ghibli;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+
+// Headless batch mode: renders every audio file in a directory with one set of effect settings.
+// Files are processed concurrently by a fixed worker pool; the directory scan blocks once
+// jobs + queue files are outstanding so a huge input directory never floods memory.
+//
+//   java GhibliAudioEditor --batch --input <dir> [--output <dir>] [--settings <file>]
+//        [--jobs <n>] [--queue <n>] [--<setting> <value> ...]
+//
+// Settings use the keys of EffectSettings.fromProperties (speed, volume, echo.enabled, ...);
+// flags override values from the settings file.
+class BatchRenderer {
+    private final EffectSettings settings;
+    private final Path outputDir;
+    private final int blockSize;
+    private final AtomicInteger completed = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final AtomicLong audioMicros = new AtomicLong();  // summed per file, rates may differ
+    private final AtomicLong inputBytes = new AtomicLong();
+
+    public BatchRenderer(EffectSettings settings, Path outputDir, int blockSize) {
+        this.settings = settings;
+        this.outputDir = outputDir;
+        this.blockSize = blockSize;
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.exit(run(args));
+    }
+
+    public static int run(String[] args) throws Exception {
+        Path inputDir = null;
+        Path outputDir = null;
+        int jobs = Runtime.getRuntime().availableProcessors();
+        int queue = -1;
+        Properties properties = new Properties();
+        Properties overrides = new Properties();
+        for (int i = 0; i < args.length; i++) {
+            String flag = args[i];
+            if (!flag.startsWith("--") || i + 1 >= args.length) {
+                return usage("Unexpected argument: " + flag);
+            }
+            String value = args[++i];
+            switch (flag) {
+                case "--input": inputDir = Paths.get(value); break;
+                case "--output": outputDir = Paths.get(value); break;
+                case "--jobs": jobs = Integer.parseInt(value); break;
+                case "--queue": queue = Integer.parseInt(value); break;
+                case "--settings":
+                    try (Reader in = Files.newBufferedReader(Paths.get(value))) {
+                        properties.load(in);
+                    }
+                    break;
+                default: overrides.setProperty(flag.substring(2), value); break;
+            }
+        }
+        if (inputDir == null || !Files.isDirectory(inputDir)) {
+            return usage("--input must be an existing directory");
+        }
+        if (outputDir == null) {
+            outputDir = inputDir.resolve("rendered");
+        }
+        // Writing into the input directory would truncate inputs that are still mapped for reading.
+        if (Files.exists(outputDir) && Files.isSameFile(inputDir, outputDir)) {
+            return usage("--output must not be the --input directory");
+        }
+        if (queue < 0) {
+            queue = jobs * 2;
+        }
+        properties.putAll(overrides);
+        EffectSettings settings = EffectSettings.fromProperties(properties);
+        Files.createDirectories(outputDir);
+
+        System.out.println("Settings: " + new TreeMap<>(settings.toProperties()));
+        System.out.println("Workers: " + jobs + ", queue: " + queue);
+        BatchRenderer renderer = new BatchRenderer(settings, outputDir, RenderEngine.DEFAULT_BLOCK_SIZE);
+        return renderer.renderDirectory(inputDir, jobs, queue) ? 0 : 1;
+    }
+
+    private static int usage(String error) {
+        System.err.println(error);
+        System.err.println("Usage: --batch --input <dir> [--output <dir>] [--settings <file>]"
+                + " [--jobs <n>] [--queue <n>] [--<setting> <value> ...]");
+        return 2;
+    }
+
+    // Renders every supported file in inputDir. Returns false if any file failed. Inputs that
+    // differ only in extension (take.wav, take.aiff) would render to the same output at once, so
+    // every input after the first that claims an output name fails without rendering.
+    public boolean renderDirectory(Path inputDir, int jobs, int queue) throws IOException, InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(jobs);
+        Semaphore outstanding = new Semaphore(jobs + queue);
+        Map<String, String> claimed = new HashMap<>();  // output name -> input that renders to it
+        long start = System.nanoTime();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(inputDir, BatchRenderer::isAudioFile)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                String outName = name.replaceFirst("\\.[^.]*$", "") + ".wav";
+                String other = claimed.putIfAbsent(outName, name);
+                if (other != null) {
+                    failed.incrementAndGet();
+                    System.err.println(name + ": failed: " + outName + " is already the output of " + other);
+                    continue;
+                }
+                outstanding.acquire();
+                pool.execute(() -> {
+                    try {
+                        renderFile(file, outputDir.resolve(outName));
+                    } finally {
+                        outstanding.release();
+                    }
+                });
+            }
+        } finally {
+            pool.shutdown();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        double audioSeconds = audioMicros.get() / 1e6;
+        System.out.printf("Done: %d files, %d failed, %.1f s audio in %.2f s (%.1fx realtime, %.1f MB/s)%n",
+                completed.get(), failed.get(), audioSeconds, seconds,
+                audioSeconds / seconds, inputBytes.get() / 1e6 / seconds);
+        return failed.get() == 0;
+    }
+
+    // Files with an extension of a type AudioSystem supports; formats added by installed service
+    // providers show up there too.
+    private static boolean isAudioFile(Path path) {
+        if (!Files.isRegularFile(path)) return false;
+        String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        for (AudioFileFormat.Type type : AudioSystem.getAudioFileTypes()) {
+            if (name.endsWith("." + type.getExtension())) return true;
+        }
+        return false;
+    }
+
+    private void renderFile(Path file, Path outFile) {
+        long start = System.nanoTime();
+        String name = file.getFileName().toString();
+        try (SampleSource source = MappedSampleSource.open(file.toFile())) {
+            AudioFormat format = source.getFormat();
+            long frames = RenderEngine.getOutputFrameCount(source, settings.speed);
+            try (WavWriter out = WavWriter.create(outFile, format)) {
+                new RenderEngine(source, settings, blockSize).renderTo(out, frames, RenderMonitor.NONE);
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            double audioSeconds = source.getFrameCount() / format.getSampleRate();
+            long bytes = source.getFrameCount() * format.getFrameSize();
+            audioMicros.addAndGet((long) (audioSeconds * 1e6));
+            inputBytes.addAndGet(bytes);
+            completed.incrementAndGet();
+            System.out.printf("%s: %.1f s audio in %.3f s (%.1fx realtime, %.1f MB/s)%n",
+                    name, audioSeconds, seconds, audioSeconds / seconds, bytes / 1e6 / seconds);
+        } catch (Exception ex) {
+            failed.incrementAndGet();
+            System.err.println(name + ": failed: " + ex);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package ghibli;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Single-producer single-consumer ring of preallocated PCM blocks, the handoff between the mix
+// thread and the output thread. The producer fills claim()'s slot and publish()es it; the consumer
+// reads peek()'s slot and release()s it. The two indices are each written by one side only and
+// published with ordered stores, so neither side takes a lock or allocates, and a slow side never
+// blocks the other beyond the ring being full or empty. A published length of 0 marks the end.
+class BlockRing {
+    private final byte[][] slots;
+    private final int[] lengths;
+    private final AtomicLong head = new AtomicLong();  // next slot to read; written by the consumer
+    private final AtomicLong tail = new AtomicLong();  // next slot to write; written by the producer
+
+    public BlockRing(int capacity, int blockBytes) {
+        slots = new byte[capacity][blockBytes];
+        lengths = new int[capacity];
+    }
+
+    // Producer: the next free slot, or null while the ring is full.
+    public byte[] claim() {
+        long t = tail.get();
+        if (t - head.get() >= slots.length) return null;
+        return slots[(int) (t % slots.length)];
+    }
+
+    // Producer: hands the claimed slot, holding length bytes, to the consumer.
+    public void publish(int length) {
+        long t = tail.get();
+        lengths[(int) (t % slots.length)] = length;
+        tail.lazySet(t + 1);
+    }
+
+    // Consumer: the oldest published slot, or null while the ring is empty.
+    public byte[] peek() {
+        long h = head.get();
+        if (h == tail.get()) return null;
+        return slots[(int) (h % slots.length)];
+    }
+
+    // Consumer: bytes in the slot peek() returned.
+    public int peekLength() {
+        return lengths[(int) (head.get() % slots.length)];
+    }
+
+    // Consumer: returns the peeked slot to the producer.
+    public void release() {
+        head.lazySet(head.get() + 1);
+    }
+
+    // Published blocks not yet released.
+    public int size() {
+        return (int) (tail.get() - head.get());
+    }
+}
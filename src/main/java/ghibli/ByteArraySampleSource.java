@@ -0,0 +1,41 @@
+package ghibli;
+
+import javax.sound.sampled.AudioFormat;
+
+// Sample source over a small in-memory buffer, e.g. the rendered preview window.
+class ByteArraySampleSource implements SampleSource {
+    private final byte[] data;
+    private final AudioFormat format;
+    private final int frameSize;
+
+    public ByteArraySampleSource(byte[] data, AudioFormat format) {
+        this.data = data;
+        this.format = format;
+        this.frameSize = format.getFrameSize();
+    }
+
+    @Override
+    public AudioFormat getFormat() {
+        return format;
+    }
+
+    @Override
+    public long getFrameCount() {
+        return data.length / frameSize;
+    }
+
+    @Override
+    public int getSample(long frame, int channel) {
+        int offset = (int) frame * frameSize + channel * 2;
+        return (data[offset + 1] << 8) | (data[offset] & 0xff);
+    }
+
+    @Override
+    public int read(long startFrame, byte[] dest, int offset, int frameCount) {
+        long available = getFrameCount() - startFrame;
+        if (available <= 0) return 0;
+        int frames = (int) Math.min(frameCount, available);
+        System.arraycopy(data, (int) startFrame * frameSize, dest, offset, frames * frameSize);
+        return frames;
+    }
+}
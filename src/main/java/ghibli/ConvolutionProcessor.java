@@ -0,0 +1,204 @@
+package ghibli;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Convolution reverb by uniformly partitioned overlap-save FFT convolution. Input is gathered into
+// PARTITION-frame slices; each slice is transformed once into a frequency-domain delay line, and
+// the wet output is the inverse transform of the delay line multiplied against the IR's
+// precomputed partition spectra. Cost per slice is two FFTs plus one complex multiply-add per
+// IR partition, independent of the host block size. The wet signal trails the dry one by
+// PARTITION frames, which acts as a short pre-delay; the dry path has no added latency.
+// A mix of 0 is a bypass and skips all FFT work.
+//
+// Delay line slots are cleared lazily: only the slots written since the last clear take part in
+// the multiply-add, so clearing costs nothing however long the IR is. A live chain switching to a
+// longer IR takes a delay line built off the audio thread from its own handoff, separate from the
+// settings snapshot, so update() only swaps references.
+class ConvolutionProcessor implements Processor {
+    public static final int PARTITION = 256;
+
+    // A zeroed delay line for one IR, built with its spectra and offered through the handoff
+    // before the settings that name the IR are published. The first live chain to switch to that
+    // IR takes it out of the handoff; any other falls back to allocating its own.
+    static class DelayLine {
+        private final ImpulseResponse ir;
+        private final float sampleRate;
+        private final float[][][] re;
+        private final float[][][] im;
+
+        private DelayLine(ImpulseResponse ir, float sampleRate, float[][][] re, float[][][] im) {
+            this.ir = ir;
+            this.sampleRate = sampleRate;
+            this.re = re;
+            this.im = im;
+        }
+
+        // Builds the IR's spectra at sampleRate, if not cached yet, and a delay line to match.
+        public static DelayLine prepare(ImpulseResponse ir, int channels, float sampleRate) {
+            int partitions = ir.getSpectra(sampleRate).partitions;
+            int bins = PARTITION + 1;
+            return new DelayLine(ir, sampleRate, new float[channels][partitions][bins],
+                    new float[channels][partitions][bins]);
+        }
+
+        private boolean fits(ImpulseResponse forIr, int channels, float forSampleRate) {
+            return ir == forIr && sampleRate == forSampleRate && re.length == channels;
+        }
+    }
+
+    private final int channels;
+    private final float sampleRate;
+    private final AtomicReference<DelayLine> prepared;  // handoff from the UI; null when there is none
+    private final Fft fft = new Fft(2 * PARTITION);
+    private final int bins = fft.getBins();
+    private final float[][] input;      // [channel][2 * PARTITION]: previous slice, current slice
+    private final float[][] wet;        // [channel][PARTITION]: output of the last full slice
+    private final float[] accRe = new float[bins];
+    private final float[] accIm = new float[bins];
+    private final float[] time = new float[2 * PARTITION];
+    private int fill;
+
+    private ImpulseResponse ir;
+    private ImpulseResponse.Spectra spectra;
+    private float[][][] delayRe = new float[0][0][0];  // [channel][partition][bin], a ring
+    private float[][][] delayIm = new float[0][0][0];
+    private int head;
+    private int valid;  // slots written since the last clear, newest at head
+
+    private float mix;
+    private float targetMix;
+
+    public ConvolutionProcessor(int channels, float sampleRate, EffectSettings settings) {
+        this(channels, sampleRate, settings, null);
+    }
+
+    public ConvolutionProcessor(int channels, float sampleRate, EffectSettings settings,
+                                AtomicReference<DelayLine> prepared) {
+        this.channels = channels;
+        this.sampleRate = sampleRate;
+        this.prepared = prepared;
+        this.input = new float[channels][2 * PARTITION];
+        this.wet = new float[channels][PARTITION];
+        setImpulseResponse(settings.reverbIr);
+        this.mix = mixFor(settings);
+        this.targetMix = mix;
+    }
+
+    private float mixFor(EffectSettings settings) {
+        return settings.reverbEnabled && spectra != null ? (float) settings.reverbMix : 0f;
+    }
+
+    // Switching IRs reuses the delay line when it is already long enough, and otherwise takes the
+    // prepared one if it fits. The spectra themselves come from the IR's cache, so a caller that
+    // called getSpectra up front never waits here.
+    private void setImpulseResponse(ImpulseResponse newIr) {
+        if (newIr == ir) return;
+        ir = newIr;
+        spectra = newIr == null ? null : newIr.getSpectra(sampleRate);
+        int partitions = spectra == null ? 0 : spectra.partitions;
+        if (partitions > 0 && (delayRe.length == 0 || delayRe[0].length < partitions)) {
+            DelayLine offered = prepared == null ? null : prepared.get();
+            if (offered != null && offered.fits(newIr, channels, sampleRate) && prepared.compareAndSet(offered, null)) {
+                delayRe = offered.re;
+                delayIm = offered.im;
+            } else {
+                delayRe = new float[channels][partitions][bins];
+                delayIm = new float[channels][partitions][bins];
+            }
+        }
+        clear();
+    }
+
+    @Override
+    public void update(EffectSettings settings) {
+        setImpulseResponse(settings.reverbIr);
+        float newTarget = mixFor(settings);
+        // Coming out of bypass, start from silence rather than a stale tail.
+        if (mix == 0f && targetMix == 0f && newTarget != 0f) clear();
+        targetMix = newTarget;
+    }
+
+    @Override
+    public void process(float[][] block, int frames) {
+        if (mix == 0f && targetMix == 0f) return;
+        float m = mix;
+        float step = (targetMix - m) / frames;
+        for (int start = 0; start < frames; ) {
+            int n = Math.min(frames - start, PARTITION - fill);
+            for (int ch = 0; ch < channels; ch++) {
+                float[] samples = block[ch];
+                float[] in = input[ch];
+                float[] w = wet[ch];
+                System.arraycopy(samples, start, in, PARTITION + fill, n);
+                for (int i = 0; i < n; i++) {
+                    float mi = m + step * (start + i + 1);
+                    float dry = samples[start + i];
+                    samples[start + i] = dry + mi * (w[fill + i] - dry);
+                }
+            }
+            fill += n;
+            start += n;
+            if (fill == PARTITION) {
+                convolveSlice();
+                fill = 0;
+            }
+        }
+        mix = targetMix;
+    }
+
+    private void convolveSlice() {
+        int ring = delayRe[0].length;
+        if (valid < ring) valid++;
+        int partitions = Math.min(spectra.partitions, valid);
+        for (int ch = 0; ch < channels; ch++) {
+            float[] in = input[ch];
+            float[][] xRe = delayRe[ch];
+            float[][] xIm = delayIm[ch];
+            fft.forward(in, xRe[head], xIm[head]);
+            System.arraycopy(in, PARTITION, in, 0, PARTITION);
+
+            int irChannel = Math.min(ch, spectra.re.length - 1);
+            float[][] hRe = spectra.re[irChannel];
+            float[][] hIm = spectra.im[irChannel];
+            Arrays.fill(accRe, 0f);
+            Arrays.fill(accIm, 0f);
+            // Slice p partitions ago meets IR partition p; slots not written since the clear hold
+            // silence and are skipped.
+            int slot = head;
+            for (int p = 0; p < partitions; p++) {
+                float[] ar = xRe[slot];
+                float[] ai = xIm[slot];
+                float[] br = hRe[p];
+                float[] bi = hIm[p];
+                for (int k = 0; k < bins; k++) {
+                    accRe[k] += ar[k] * br[k] - ai[k] * bi[k];
+                    accIm[k] += ar[k] * bi[k] + ai[k] * br[k];
+                }
+                slot = slot == 0 ? ring - 1 : slot - 1;
+            }
+            fft.inverse(accRe, accIm, time);
+            System.arraycopy(time, PARTITION, wet[ch], 0, PARTITION);
+        }
+        head = head + 1 == ring ? 0 : head + 1;
+    }
+
+    private void clear() {
+        for (float[] in : input) Arrays.fill(in, 0f);
+        for (float[] w : wet) Arrays.fill(w, 0f);
+        fill = 0;
+        head = 0;
+        valid = 0;
+    }
+
+    @Override
+    public void reset() {
+        clear();
+        mix = targetMix;
+    }
+
+    @Override
+    public boolean isStateless() {
+        return false;
+    }
+}
@@ -0,0 +1,177 @@
+package ghibli;
+
+import java.io.*;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import javax.sound.sampled.*;
+
+// Sample source for files that can't be mapped in place (compressed, 8/24-bit, big-endian): the
+// stream is decoded to 16-bit PCM in a temp file that is mapped as it grows. Decoding runs one
+// chunk per decodeChunk call, and frames are readable as soon as their chunk is written, so a
+// loader can hand the source to playback and the waveform while the rest is still decoding.
+// One thread decodes; any number may read.
+class DecodedSampleSource implements SampleSource {
+    public static final int CHUNK_FRAMES = 1 << 16;
+    // 64 MB segments, mapped read-write as the decoder reaches them. A power of two, so a 2-byte
+    // sample never straddles two.
+    private static final int SEGMENT_SHIFT = 26;
+    private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+
+    private final AudioFormat format;
+    private final int frameSize;
+    private final long expectedFrames;
+    private final File tempFile;
+    private final AudioInputStream in;
+    private final FileChannel channel;
+    private final byte[] chunk;
+    private volatile MappedByteBuffer[] segments = new MappedByteBuffer[0];
+    private volatile long frameCount;    // published after the frames are written
+    private volatile boolean complete;
+
+    private DecodedSampleSource(AudioInputStream in, File tempFile) throws IOException {
+        this.in = in;
+        this.format = in.getFormat();
+        this.frameSize = format.getFrameSize();
+        this.expectedFrames = in.getFrameLength() == AudioSystem.NOT_SPECIFIED ? -1 : in.getFrameLength();
+        this.tempFile = tempFile;
+        this.channel = FileChannel.open(tempFile.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.chunk = new byte[CHUNK_FRAMES * frameSize];
+    }
+
+    // Opens the decoder; no audio is decoded yet.
+    public static DecodedSampleSource open(File file) throws IOException, UnsupportedAudioFileException {
+        AudioInputStream inStream = AudioSystem.getAudioInputStream(file);
+        File temp = null;
+        try {
+            AudioFormat baseFormat = inStream.getFormat();
+            AudioFormat decodedFormat = new AudioFormat(
+                    AudioFormat.Encoding.PCM_SIGNED,
+                    baseFormat.getSampleRate(),
+                    16,
+                    baseFormat.getChannels(),
+                    baseFormat.getChannels() * 2,
+                    baseFormat.getSampleRate(),
+                    false);
+            temp = File.createTempFile("ghibli-", ".pcm");
+            temp.deleteOnExit();
+            return new DecodedSampleSource(AudioSystem.getAudioInputStream(decodedFormat, inStream), temp);
+        } catch (IOException | RuntimeException e) {
+            inStream.close();
+            if (temp != null) temp.delete();
+            throw e;
+        }
+    }
+
+    // Opens and decodes the whole file before returning.
+    public static DecodedSampleSource decode(File file) throws IOException, UnsupportedAudioFileException {
+        DecodedSampleSource source = open(file);
+        try {
+            while (source.decodeChunk()) {
+            }
+        } catch (IOException | RuntimeException e) {
+            source.close();
+            throw e;
+        }
+        return source;
+    }
+
+    // Decodes up to CHUNK_FRAMES more frames; returns false once the stream is exhausted. Only
+    // the last chunk can be short, so every earlier one is a whole number of 256-frame buckets.
+    public boolean decodeChunk() throws IOException {
+        if (complete) return false;
+        int bytes = in.readNBytes(chunk, 0, chunk.length);
+        int frames = bytes / frameSize;
+        if (frames > 0) {
+            write(frameCount * frameSize, frames * frameSize);
+            frameCount += frames;
+        }
+        if (bytes < chunk.length) {
+            complete = true;
+            in.close();
+        }
+        return frames > 0;
+    }
+
+    private void write(long pos, int length) throws IOException {
+        MappedByteBuffer[] mapped = segments;
+        int needed = (int) ((pos + length + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+        if (needed > mapped.length) {
+            mapped = Arrays.copyOf(mapped, needed);
+            for (int i = segments.length; i < needed; i++) {
+                mapped[i] = channel.map(FileChannel.MapMode.READ_WRITE, (long) i << SEGMENT_SHIFT, 1L << SEGMENT_SHIFT);
+                mapped[i].order(ByteOrder.LITTLE_ENDIAN);
+            }
+            segments = mapped;
+        }
+        for (int offset = 0; offset < length; ) {
+            MappedByteBuffer segment = mapped[(int) (pos >>> SEGMENT_SHIFT)];
+            int segmentPos = (int) (pos & SEGMENT_MASK);
+            int n = Math.min(length - offset, segment.capacity() - segmentPos);
+            segment.put(segmentPos, chunk, offset, n);
+            pos += n;
+            offset += n;
+        }
+    }
+
+    public boolean isComplete() {
+        return complete;
+    }
+
+    // Frame count the stream header announced, or -1 when it doesn't say (e.g. MP3).
+    public long getExpectedFrames() {
+        return expectedFrames;
+    }
+
+    @Override
+    public AudioFormat getFormat() {
+        return format;
+    }
+
+    // Frames decoded so far; final once isComplete().
+    @Override
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    @Override
+    public int getSample(long frame, int channel) {
+        long pos = frame * frameSize + channel * 2L;
+        return segments[(int) (pos >>> SEGMENT_SHIFT)].getShort((int) (pos & SEGMENT_MASK));
+    }
+
+    @Override
+    public int read(long startFrame, byte[] dest, int offset, int frameCount) {
+        long available = this.frameCount - startFrame;
+        if (available <= 0) return 0;
+        int frames = (int) Math.min(frameCount, available);
+        MappedByteBuffer[] mapped = segments;
+        long pos = startFrame * frameSize;
+        int remaining = frames * frameSize;
+        while (remaining > 0) {
+            MappedByteBuffer segment = mapped[(int) (pos >>> SEGMENT_SHIFT)];
+            int segmentPos = (int) (pos & SEGMENT_MASK);
+            int len = Math.min(remaining, segment.capacity() - segmentPos);
+            segment.get(segmentPos, dest, offset, len);
+            pos += len;
+            offset += len;
+            remaining -= len;
+        }
+        return frames;
+    }
+
+    // Must not race decodeChunk. As with MappedSampleSource, the mappings stay readable until
+    // they are garbage collected.
+    @Override
+    public void close() {
+        try {
+            in.close();
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        tempFile.delete();
+    }
+}
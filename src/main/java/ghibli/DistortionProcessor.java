@@ -0,0 +1,49 @@
+package ghibli;
+
+// Hard-clip distortion at a symmetric threshold. A threshold of 1.0 (full scale) is a bypass.
+class DistortionProcessor implements Processor {
+    private static final SampleKernels KERNELS = SampleKernels.INSTANCE;
+
+    private float threshold;
+    private float targetThreshold;
+
+    public DistortionProcessor(EffectSettings settings) {
+        this.threshold = thresholdFor(settings);
+        this.targetThreshold = threshold;
+    }
+
+    private static float thresholdFor(EffectSettings settings) {
+        return settings.distortionEnabled ? (float) (1.0 - settings.distortionLevel) : 1f;
+    }
+
+    @Override
+    public void update(EffectSettings settings) {
+        targetThreshold = thresholdFor(settings);
+    }
+
+    @Override
+    public void process(float[][] block, int frames) {
+        float t = threshold;
+        if (t == targetThreshold) {
+            for (float[] samples : block) {
+                KERNELS.clip(samples, 0, frames, t);
+            }
+            return;
+        }
+        float step = (targetThreshold - t) / frames;
+        for (float[] samples : block) {
+            KERNELS.clipRamp(samples, 0, frames, t, step);
+        }
+        threshold = targetThreshold;
+    }
+
+    @Override
+    public void reset() {
+        threshold = targetThreshold;
+    }
+
+    @Override
+    public boolean isStateless() {
+        return true;
+    }
+}
@@ -0,0 +1,91 @@
+package ghibli;
+
+import java.util.Arrays;
+
+// Feedback echo: each output is fed back into a per-channel delay line and mixed in again
+// delay frames later. The line is sized for the longest delay it may be retargeted to, so
+// changing the delay during playback never allocates. A decay of 0 is a bypass.
+class EchoProcessor implements Processor {
+    private final float sampleRate;
+    private final float[][] delayLine;
+    private int delay;
+    private float decay;
+    private float targetDecay;
+    private int writeIndex;
+
+    public EchoProcessor(int channels, float sampleRate, int maxDelayMs, EffectSettings settings) {
+        this.sampleRate = sampleRate;
+        int capacity = Math.max(delayFramesFor(Math.max(maxDelayMs, settings.echoDelayMs), sampleRate), 1);
+        this.delayLine = new float[channels][capacity];
+        this.delay = Math.min(capacity, Math.max(1, delayFramesFor(settings.echoDelayMs, sampleRate)));
+        this.decay = decayFor(settings);
+        this.targetDecay = decay;
+    }
+
+    private static int delayFramesFor(int delayMs, float sampleRate) {
+        return (int) (delayMs * sampleRate / 1000.0);
+    }
+
+    private static float decayFor(EffectSettings settings) {
+        return settings.echoEnabled ? (float) settings.echoDecay : 0f;
+    }
+
+    @Override
+    public void update(EffectSettings settings) {
+        int capacity = delayLine[0].length;
+        delay = Math.min(capacity, Math.max(1, delayFramesFor(settings.echoDelayMs, sampleRate)));
+        targetDecay = decayFor(settings);
+    }
+
+    @Override
+    public void process(float[][] block, int frames) {
+        int capacity = delayLine[0].length;
+        float d = decay;
+        float step = (targetDecay - d) / frames;
+        int write = writeIndex;
+        int read = write - delay;
+        if (read < 0) read += capacity;
+        // Walk the ring in contiguous runs so the inner loop carries no wrap-around check.
+        for (int start = 0; start < frames; ) {
+            int run = Math.min(frames - start, Math.min(capacity - write, capacity - read));
+            for (int ch = 0; ch < block.length; ch++) {
+                float[] samples = block[ch];
+                float[] line = delayLine[ch];
+                if (step == 0f) {
+                    for (int i = 0; i < run; i++) {
+                        float y = samples[start + i] + d * line[read + i];
+                        line[write + i] = y;
+                        samples[start + i] = y;
+                    }
+                } else {
+                    for (int i = 0; i < run; i++) {
+                        float y = samples[start + i] + (d + step * (start + i + 1)) * line[read + i];
+                        line[write + i] = y;
+                        samples[start + i] = y;
+                    }
+                }
+            }
+            start += run;
+            write += run;
+            read += run;
+            if (write == capacity) write = 0;
+            if (read == capacity) read = 0;
+        }
+        writeIndex = write;
+        decay = targetDecay;
+    }
+
+    @Override
+    public void reset() {
+        for (float[] line : delayLine) {
+            Arrays.fill(line, 0f);
+        }
+        writeIndex = 0;
+        decay = targetDecay;
+    }
+
+    @Override
+    public boolean isStateless() {
+        return false;
+    }
+}
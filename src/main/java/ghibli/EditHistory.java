@@ -0,0 +1,52 @@
+package ghibli;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+// Undo/redo over PieceTable snapshots. Tables are immutable and share nothing mutable, so each
+// step is just a reference to the table before or after an edit.
+class EditHistory {
+    private final int limit;
+    private final Deque<PieceTable> undo = new ArrayDeque<>();
+    private final Deque<PieceTable> redo = new ArrayDeque<>();
+    private PieceTable current;
+
+    public EditHistory(PieceTable initial, int limit) {
+        this.current = initial;
+        this.limit = limit;
+    }
+
+    public PieceTable getCurrent() {
+        return current;
+    }
+
+    // Makes edited the current table; anything undone before is no longer redoable.
+    public void apply(PieceTable edited) {
+        undo.push(current);
+        if (undo.size() > limit) undo.removeLast();
+        redo.clear();
+        current = edited;
+    }
+
+    public boolean canUndo() {
+        return !undo.isEmpty();
+    }
+
+    public boolean canRedo() {
+        return !redo.isEmpty();
+    }
+
+    public PieceTable undo() {
+        if (undo.isEmpty()) return current;
+        redo.push(current);
+        current = undo.pop();
+        return current;
+    }
+
+    public PieceTable redo() {
+        if (redo.isEmpty()) return current;
+        undo.push(current);
+        current = redo.pop();
+        return current;
+    }
+}
@@ -0,0 +1,58 @@
+package ghibli;
+
+import javax.sound.sampled.AudioFormat;
+
+// Sample source that reads another source through a PieceTable, so playback, preview and export
+// see the edited audio without it ever being assembled. Reads that cross a piece boundary are
+// split into one read per piece. The underlying source belongs to the caller and is not closed.
+class EditedSampleSource implements SampleSource {
+    private final SampleSource source;
+    private final PieceTable edits;
+    private final int frameSize;
+
+    public EditedSampleSource(SampleSource source, PieceTable edits) {
+        this.source = source;
+        this.edits = edits;
+        this.frameSize = source.getFormat().getFrameSize();
+    }
+
+    public SampleSource getSource() {
+        return source;
+    }
+
+    public PieceTable getEdits() {
+        return edits;
+    }
+
+    @Override
+    public AudioFormat getFormat() {
+        return source.getFormat();
+    }
+
+    @Override
+    public long getFrameCount() {
+        return edits.getFrameCount();
+    }
+
+    @Override
+    public int getSample(long frame, int channel) {
+        return source.getSample(edits.toSourceFrame(frame), channel);
+    }
+
+    @Override
+    public int read(long startFrame, byte[] dest, int offset, int frameCount) {
+        long available = edits.getFrameCount() - startFrame;
+        if (available <= 0 || startFrame < 0) return 0;
+        int frames = (int) Math.min(frameCount, available);
+        int done = 0;
+        for (int piece = edits.findPiece(startFrame); done < frames; piece++) {
+            long frame = startFrame + done;
+            long inPiece = frame - edits.getOffset(piece);
+            int n = (int) Math.min(frames - done, edits.getLength(piece) - inPiece);
+            int read = source.read(edits.getSourceStart(piece) + inPiece, dest, offset + done * frameSize, n);
+            done += read;
+            if (read < n) break; // source shorter than the table claims
+        }
+        return done;
+    }
+}
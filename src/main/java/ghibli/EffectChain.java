@@ -0,0 +1,165 @@
+package ghibli;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.sound.sampled.AudioFormat;
+
+// Ordered list of processors applied to each block.
+class EffectChain {
+    // Longest echo delay a playback chain can be retargeted to (the delay slider's maximum).
+    public static final int MAX_ECHO_DELAY_MS = 500;
+
+    private final Processor[] stages;
+
+    public EffectChain(List<Processor> stages) {
+        this.stages = stages.toArray(new Processor[0]);
+    }
+
+    // Stages of a render chain in processing order; the resampler runs ahead of all of them.
+    enum Stage {
+        VOLUME("volume"), ECHO("echo"), DISTORTION("distortion"), LOW_PASS("low-pass"), REVERB("reverb");
+
+        private final String label;
+
+        Stage(String label) {
+            this.label = label;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    // Builds the standard volume -> echo -> distortion -> low-pass -> reverb chain for a fixed render. Only
+    // enabled effects become stages, so the per-sample loops never test effect flags.
+    public static EffectChain fromSettings(EffectSettings settings, AudioFormat format) {
+        List<Processor> stages = new ArrayList<>();
+        for (Stage stage : Stage.values()) {
+            Processor processor = createStage(stage, settings, format);
+            if (processor != null) stages.add(processor);
+        }
+        return new EffectChain(stages);
+    }
+
+    // The processor for one stage of a fixed render, or null when the settings disable it. Its
+    // cost is recorded in the stage's Telemetry histogram.
+    public static Processor createStage(Stage stage, EffectSettings settings, AudioFormat format) {
+        return Telemetry.timed(stage, createUntimedStage(stage, settings, format));
+    }
+
+    private static Processor createUntimedStage(Stage stage, EffectSettings settings, AudioFormat format) {
+        int channels = format.getChannels();
+        float sampleRate = format.getSampleRate();
+        switch (stage) {
+            case VOLUME:
+                return new VolumeProcessor(settings);
+            case ECHO:
+                return settings.echoEnabled ? new EchoProcessor(channels, sampleRate, settings.echoDelayMs, settings) : null;
+            case DISTORTION:
+                return settings.distortionEnabled ? new DistortionProcessor(settings) : null;
+            case LOW_PASS:
+                return settings.lowPassEnabled ? new LowPassProcessor(channels, sampleRate, settings) : null;
+            case REVERB:
+                return settings.reverbEnabled && settings.reverbIr != null
+                        ? new ConvolutionProcessor(channels, sampleRate, settings) : null;
+            default:
+                throw new IllegalArgumentException("Unknown stage: " + stage);
+        }
+    }
+
+    // Builds the same chain with every stage present, so effects can be toggled and retargeted
+    // live through update(); disabled effects sit at their bypass values. The reverb takes its
+    // delay line for a newly selected IR from reverbDelayLine when one was prepared there.
+    public static EffectChain forPlayback(EffectSettings settings, AudioFormat format,
+                                          AtomicReference<ConvolutionProcessor.DelayLine> reverbDelayLine) {
+        int channels = format.getChannels();
+        float sampleRate = format.getSampleRate();
+        List<Processor> stages = new ArrayList<>();
+        stages.add(Telemetry.timed(Stage.VOLUME, new VolumeProcessor(settings)));
+        stages.add(Telemetry.timed(Stage.ECHO, new EchoProcessor(channels, sampleRate, MAX_ECHO_DELAY_MS, settings)));
+        stages.add(Telemetry.timed(Stage.DISTORTION, new DistortionProcessor(settings)));
+        stages.add(Telemetry.timed(Stage.LOW_PASS, new LowPassProcessor(channels, sampleRate, settings)));
+        stages.add(Telemetry.timed(Stage.REVERB, new ConvolutionProcessor(channels, sampleRate, settings, reverbDelayLine)));
+        return new EffectChain(stages);
+    }
+
+    // This chain followed by a fixed gain, e.g. the loudness normalization of an export. The gain
+    // comes after every effect, so it scales the finished output without changing how the
+    // distortion stage clips.
+    public EffectChain withOutputGain(float gain) {
+        List<Processor> all = new ArrayList<>(Arrays.asList(stages));
+        all.add(new OutputGain(gain));
+        return new EffectChain(all);
+    }
+
+    // Leading stages that can run on independent chunks in parallel.
+    public EffectChain statelessHead() {
+        return new EffectChain(Arrays.asList(stages).subList(0, statelessPrefixLength()));
+    }
+
+    // Remaining stages, starting at the first stateful one; these must see the stream in order.
+    public EffectChain statefulTail() {
+        return new EffectChain(Arrays.asList(stages).subList(statelessPrefixLength(), stages.length));
+    }
+
+    private int statelessPrefixLength() {
+        int n = 0;
+        while (n < stages.length && stages[n].isStateless()) n++;
+        return n;
+    }
+
+    public boolean isEmpty() {
+        return stages.length == 0;
+    }
+
+    public void update(EffectSettings settings) {
+        for (Processor stage : stages) {
+            stage.update(settings);
+        }
+    }
+
+    public void process(float[][] block, int frames) {
+        for (Processor stage : stages) {
+            stage.process(block, frames);
+        }
+    }
+
+    public void reset() {
+        for (Processor stage : stages) {
+            stage.reset();
+        }
+    }
+
+    private static class OutputGain implements Processor {
+        private static final SampleKernels KERNELS = SampleKernels.INSTANCE;
+
+        private final float gain;
+
+        OutputGain(float gain) {
+            this.gain = gain;
+        }
+
+        @Override
+        public void process(float[][] block, int frames) {
+            for (float[] samples : block) {
+                KERNELS.scale(samples, 0, frames, gain);
+            }
+        }
+
+        @Override
+        public void update(EffectSettings settings) {
+        }
+
+        @Override
+        public void reset() {
+        }
+
+        @Override
+        public boolean isStateless() {
+            return true;
+        }
+    }
+}
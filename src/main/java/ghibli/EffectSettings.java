@@ -0,0 +1,114 @@
+package ghibli;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Properties;
+
+// Immutable snapshot of every render parameter, so render code never has to read Swing components.
+class EffectSettings {
+    public final double speed;            // playback rate, 1.0 = original; tempo only when preservePitch
+    public final double volume;           // linear gain, 1.0 = unity
+    public final boolean echoEnabled;
+    public final int echoDelayMs;
+    public final double echoDecay;        // 0-1
+    public final boolean distortionEnabled;
+    public final double distortionLevel;  // 0-1, fraction of full scale clipped away
+    public final boolean lowPassEnabled;
+    public final double lowPassCutoff;    // Hz
+    public final boolean reverbEnabled;
+    public final double reverbMix;        // 0-1, wet share of the output
+    public final ImpulseResponse reverbIr; // null when no IR is loaded
+    public final Resampler.Quality resampleQuality;
+    public final boolean preservePitch;   // time-stretch instead of resampling
+    public final double pitchSemitones;   // pitch shift, only applied when preservePitch
+
+    public EffectSettings(double speed, double volume,
+                          boolean echoEnabled, int echoDelayMs, double echoDecay,
+                          boolean distortionEnabled, double distortionLevel,
+                          boolean lowPassEnabled, double lowPassCutoff,
+                          boolean reverbEnabled, double reverbMix, ImpulseResponse reverbIr,
+                          Resampler.Quality resampleQuality, boolean preservePitch, double pitchSemitones) {
+        this.speed = speed;
+        this.volume = volume;
+        this.echoEnabled = echoEnabled;
+        this.echoDelayMs = echoDelayMs;
+        this.echoDecay = echoDecay;
+        this.distortionEnabled = distortionEnabled;
+        this.distortionLevel = distortionLevel;
+        this.lowPassEnabled = lowPassEnabled;
+        this.lowPassCutoff = lowPassCutoff;
+        this.reverbEnabled = reverbEnabled;
+        this.reverbMix = reverbMix;
+        this.reverbIr = reverbIr;
+        this.resampleQuality = resampleQuality;
+        this.preservePitch = preservePitch;
+        this.pitchSemitones = pitchSemitones;
+    }
+
+    // Reads settings from properties, falling back to the editor's slider defaults for missing keys.
+    // reverb.ir names an impulse response file, which is loaded here.
+    public static EffectSettings fromProperties(Properties p) throws IOException {
+        String irPath = p.getProperty("reverb.ir");
+        return new EffectSettings(
+                Double.parseDouble(p.getProperty("speed", "1.0")),
+                Double.parseDouble(p.getProperty("volume", "1.0")),
+                Boolean.parseBoolean(p.getProperty("echo.enabled", "false")),
+                Integer.parseInt(p.getProperty("echo.delayMs", "200")),
+                Double.parseDouble(p.getProperty("echo.decay", "0.5")),
+                Boolean.parseBoolean(p.getProperty("distortion.enabled", "false")),
+                Double.parseDouble(p.getProperty("distortion.level", "0.0")),
+                Boolean.parseBoolean(p.getProperty("lowpass.enabled", "false")),
+                Double.parseDouble(p.getProperty("lowpass.cutoff", "2000")),
+                Boolean.parseBoolean(p.getProperty("reverb.enabled", "false")),
+                Double.parseDouble(p.getProperty("reverb.mix", "0.3")),
+                irPath == null || irPath.isEmpty() ? null : ImpulseResponse.load(new File(irPath)),
+                Resampler.Quality.parse(p.getProperty("resample.quality")),
+                Boolean.parseBoolean(p.getProperty("pitch.preserve", "false")),
+                Double.parseDouble(p.getProperty("pitch.semitones", "0")));
+    }
+
+    public Properties toProperties() {
+        Properties p = new Properties();
+        p.setProperty("speed", Double.toString(speed));
+        p.setProperty("volume", Double.toString(volume));
+        p.setProperty("echo.enabled", Boolean.toString(echoEnabled));
+        p.setProperty("echo.delayMs", Integer.toString(echoDelayMs));
+        p.setProperty("echo.decay", Double.toString(echoDecay));
+        p.setProperty("distortion.enabled", Boolean.toString(distortionEnabled));
+        p.setProperty("distortion.level", Double.toString(distortionLevel));
+        p.setProperty("lowpass.enabled", Boolean.toString(lowPassEnabled));
+        p.setProperty("lowpass.cutoff", Double.toString(lowPassCutoff));
+        p.setProperty("reverb.enabled", Boolean.toString(reverbEnabled));
+        p.setProperty("reverb.mix", Double.toString(reverbMix));
+        if (reverbIr != null) p.setProperty("reverb.ir", reverbIr.getFile().getPath());
+        p.setProperty("resample.quality", resampleQuality.name().toLowerCase(Locale.ROOT));
+        p.setProperty("pitch.preserve", Boolean.toString(preservePitch));
+        p.setProperty("pitch.semitones", Double.toString(pitchSemitones));
+        return p;
+    }
+
+    // 64-bit hash of every parameter that changes rendered output, for RenderCache keys. Settings
+    // of disabled effects are left out, the same way EffectChain.fromSettings skips their stages,
+    // so "echo off" hashes alike whatever the echo sliders say. The IR counts by its id.
+    public long fingerprint() {
+        long h = 0xcbf29ce484222325L;
+        h = mix(h, Double.doubleToLongBits(speed));
+        h = mix(h, Double.doubleToLongBits(volume));
+        h = mix(h, resampleQuality.ordinal());
+        h = mix(h, preservePitch ? Double.doubleToLongBits(pitchSemitones) : -1);
+        h = mix(h, echoEnabled ? echoDelayMs : -1);
+        h = mix(h, echoEnabled ? Double.doubleToLongBits(echoDecay) : -1);
+        h = mix(h, distortionEnabled ? Double.doubleToLongBits(distortionLevel) : -1);
+        h = mix(h, lowPassEnabled ? Double.doubleToLongBits(lowPassCutoff) : -1);
+        boolean reverb = reverbEnabled && reverbIr != null;
+        h = mix(h, reverb ? Double.doubleToLongBits(reverbMix) : -1);
+        h = mix(h, reverb ? reverbIr.getId() : -1);
+        return h;
+    }
+
+    // One FNV-1a round over a whole 64-bit word.
+    private static long mix(long h, long value) {
+        return (h ^ value) * 0x100000001b3L;
+    }
+}
@@ -0,0 +1,127 @@
+package ghibli;
+
+// Radix-2 FFT plan for real signals of a fixed power-of-two size. Twiddles and the bit-reversal
+// permutation are computed once, so a plan can be reused for every block without allocating.
+// A real transform of size n runs as a complex transform of size n / 2 over the even/odd samples.
+// Spectra are split into re/im arrays of n / 2 + 1 bins. Not thread-safe: scratch is per plan.
+class Fft {
+    private final int size;
+    private final int half;
+    private final int[] bitReverse;
+    private final float[] cosHalf;   // twiddles of the size / 2 complex transform
+    private final float[] sinHalf;
+    private final float[] cosFull;   // twiddles for splitting the real spectrum, k = 0..half
+    private final float[] sinFull;
+    private final float[] zr;
+    private final float[] zi;
+
+    public Fft(int size) {
+        if (size < 4 || Integer.bitCount(size) != 1) {
+            throw new IllegalArgumentException("FFT size must be a power of two >= 4: " + size);
+        }
+        this.size = size;
+        this.half = size / 2;
+        int bits = Integer.numberOfTrailingZeros(half);
+        bitReverse = new int[half];
+        for (int i = 0; i < half; i++) {
+            bitReverse[i] = Integer.reverse(i) >>> (32 - bits);
+        }
+        cosHalf = new float[half / 2];
+        sinHalf = new float[half / 2];
+        for (int i = 0; i < half / 2; i++) {
+            cosHalf[i] = (float) Math.cos(2 * Math.PI * i / half);
+            sinHalf[i] = (float) Math.sin(2 * Math.PI * i / half);
+        }
+        cosFull = new float[half + 1];
+        sinFull = new float[half + 1];
+        for (int k = 0; k <= half; k++) {
+            cosFull[k] = (float) Math.cos(2 * Math.PI * k / size);
+            sinFull[k] = (float) Math.sin(2 * Math.PI * k / size);
+        }
+        zr = new float[half];
+        zi = new float[half];
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getBins() {
+        return half + 1;
+    }
+
+    // Transforms size real samples into bins 0..size/2.
+    public void forward(float[] in, float[] re, float[] im) {
+        for (int n = 0; n < half; n++) {
+            zr[n] = in[2 * n];
+            zi[n] = in[2 * n + 1];
+        }
+        transform(zr, zi, -1);
+        // Untangle the even (E) and odd (O) sample spectra: X[k] = E[k] + e^(-2 pi i k / size) O[k].
+        for (int k = 0; k <= half; k++) {
+            int a = k == half ? 0 : k;
+            int b = k == 0 ? 0 : half - k;
+            float er = 0.5f * (zr[a] + zr[b]);
+            float ei = 0.5f * (zi[a] - zi[b]);
+            float or = 0.5f * (zi[a] + zi[b]);
+            float oi = -0.5f * (zr[a] - zr[b]);
+            float c = cosFull[k];
+            float s = -sinFull[k];
+            re[k] = er + c * or - s * oi;
+            im[k] = ei + c * oi + s * or;
+        }
+    }
+
+    // Inverse of forward, including the 1 / size scale. re and im are left untouched.
+    public void inverse(float[] re, float[] im, float[] out) {
+        // Rebuild Z[k] = E[k] + i O[k] from X[k] and conj(X[half - k]).
+        for (int k = 0; k < half; k++) {
+            int m = half - k;
+            float er = 0.5f * (re[k] + re[m]);
+            float ei = 0.5f * (im[k] - im[m]);
+            float dr = 0.5f * (re[k] - re[m]);
+            float di = 0.5f * (im[k] + im[m]);
+            float c = cosFull[k];
+            float s = sinFull[k];
+            float or = dr * c - di * s;
+            float oi = dr * s + di * c;
+            zr[k] = er - oi;
+            zi[k] = ei + or;
+        }
+        transform(zr, zi, 1);
+        float scale = 1f / half;
+        for (int n = 0; n < half; n++) {
+            out[2 * n] = zr[n] * scale;
+            out[2 * n + 1] = zi[n] * scale;
+        }
+    }
+
+    // In-place iterative complex transform of size half; sign -1 is forward, +1 inverse (unscaled).
+    private void transform(float[] re, float[] im, int sign) {
+        for (int i = 0; i < half; i++) {
+            int j = bitReverse[i];
+            if (j > i) {
+                float t = re[i]; re[i] = re[j]; re[j] = t;
+                t = im[i]; im[i] = im[j]; im[j] = t;
+            }
+        }
+        for (int len = 2; len <= half; len <<= 1) {
+            int step = half / len;
+            int h = len >> 1;
+            for (int start = 0; start < half; start += len) {
+                for (int j = 0; j < h; j++) {
+                    float wr = cosHalf[j * step];
+                    float wi = sign * sinHalf[j * step];
+                    int a = start + j;
+                    int b = a + h;
+                    float tr = re[b] * wr - im[b] * wi;
+                    float ti = re[b] * wi + im[b] * wr;
+                    re[b] = re[a] - tr;
+                    im[b] = im[a] - ti;
+                    re[a] += tr;
+                    im[a] += ti;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,1358 @@
+package ghibli;
+
+import java.awt.*;
+import java.awt.event.*;
+import java.io.*;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.sound.sampled.*;
+import javax.swing.*;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+import javax.swing.border.Border;
+
+public class GhibliAudioEditor extends JFrame {
+    private static final long serialVersionUID = 1L;
+
+    // Core UI components
+    private JButton loadButton;
+    private JButton playButton;
+    private JButton saveButton;
+    private JCheckBox parallelRenderCheckBox; // render exports on all cores
+    private JCheckBox metricsOverlayCheckBox; // draw Telemetry over the waveform
+    private JSlider speedSlider;   // Controls playback speed (affects pitch/frequency)
+    private JSlider volumeSlider;  // Controls amplitude (volume)
+    private JLabel speedLabel;
+    private JLabel volumeLabel;
+    private JComboBox<Resampler.Quality> qualityComboBox; // speed-change interpolation
+    private JLabel speedTitleLabel;
+    private JCheckBox preservePitchCheckBox; // time-stretch: speed changes tempo only
+    private JSlider pitchSlider;   // semitones, used with preservePitchCheckBox
+    private JLabel pitchLabel;
+    private JCheckBox normalizeCheckBox;     // export at loudnessTargetSlider instead of the raw gain
+    private JSlider loudnessTargetSlider;    // LUFS
+    private JLabel loudnessTargetLabel;
+    private JLabel loudnessLabel;            // measured loudness of the loaded (edited) audio
+    private JProgressBar progressBar;
+    private WaveformPanel waveformPanel;
+
+    // Region editing; operates on the waveform selection
+    private JButton cutButton;
+    private JButton copyButton;
+    private JButton pasteButton;
+    private JButton deleteButton;
+    private JButton trimButton;
+    private JButton undoButton;
+    private JButton redoButton;
+    
+    // Effects UI components (in separate tab)
+    private JCheckBox echoCheckBox;
+    private JSlider echoDelaySlider;   // in ms
+    private JSlider echoDecaySlider;   // percentage (0-100)
+    private JCheckBox distortionCheckBox;
+    private JSlider distortionSlider;  // percentage (0-100)
+    private JCheckBox lowPassCheckBox;
+    private JSlider lowPassCutoffSlider; // cutoff frequency in Hz
+    private JCheckBox reverbCheckBox;
+    private JSlider reverbMixSlider;     // wet percentage (0-100)
+    private JButton reverbLoadButton;
+    private JLabel reverbIrLabel;
+    private volatile ImpulseResponse impulseResponse;
+    // Offered to the next live chain that switches to impulseResponse; see EffectChain.forPlayback.
+    private final AtomicReference<ConvolutionProcessor.DelayLine> reverbDelayLine = new AtomicReference<>();
+
+    // Multi-track mix UI components (in separate tab)
+    private DefaultListModel<Track> trackListModel;
+    private JList<Track> trackList;
+    private JButton addTrackButton;
+    private JButton removeTrackButton;
+    private JButton applyTrackSettingsButton; // copies the current controls onto the selected track
+    private JButton playMixButton;
+    private JButton exportMixButton;
+    private MixPlayback mixPlayback;          // kept while paused so play resumes there; dropped when tracks change
+    private boolean exportingMix = false;     // the export button cancels meanwhile, through saveCancelled
+    private final ForkJoinPool mixPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    // Audio data and settings
+    private File audioFile;
+    private volatile SampleSource source;   // what playback, preview and export read: the file through the edit list
+    private SampleSource loadedSource;      // memory-mapped decoded PCM of the file, never modified
+    private File loadedFile;                // the file behind loadedSource, which saves must not overwrite
+    private EditHistory history;            // null until the file has finished loading
+    private PieceTable clipboard;           // pieces of loadedSource, pasted by reference
+    private AudioLoader loader;             // non-null while a file is loading
+    private final SourceReaders sourceReaders = new SourceReaders();  // closes replaced sources once unread
+    private AudioFormat originalFormat;
+    private boolean playing = false;
+    private long currentFrame = 0;    // playback resumes here
+    private PlaybackEngine playbackEngine;
+    private Timer progressTimer;
+    private Timer metricsTimer;       // repaints the metrics overlay while it is shown
+    private int playbackBlockSize = Integer.getInteger("ghibli.playback.blockSize", PlaybackEngine.DEFAULT_BLOCK_SIZE);
+    private int playbackLatencyMs = Integer.getInteger("ghibli.playback.latencyMs", PlaybackEngine.DEFAULT_TARGET_LATENCY_MS);
+    private boolean saving = false;
+    private volatile boolean saveCancelled = false;
+    private int previewFrameCount = 10000;
+    private static final int MAX_UNDO = 100;
+    private static final double TRUE_PEAK_CEILING = -1.0; // dBTP, normalized exports never exceed it
+    private int renderBlockSize = RenderEngine.DEFAULT_BLOCK_SIZE;
+    private final PeakCache peakCache = PeakCache.createDefault();
+    private final LatencyStats previewLatency = Telemetry.RENDER.getPreviewLatency(); // slider change to repaint
+    private final IncrementalRenderer previewRenderer = new IncrementalRenderer(renderBlockSize);
+    private final RenderCache renderCache = new RenderCache(Integer.getInteger("ghibli.renderCache.mb", 256) * 1_000_000L);
+    private final ExecutorService loudnessExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "loudness-analyzer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicLong loudnessGeneration = new AtomicLong();  // bumped per request; older ones stop
+    private final PreviewScheduler<PeakIndex> previewScheduler = new PreviewScheduler<>(this::renderPreview,
+            (preview, settings, requestedAt) -> waveformPanel.setPreview(preview, settings.speed, requestedAt));
+
+    public GhibliAudioEditor() {
+        super("Ghibli Audio Editor");
+        setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        setLayout(new BorderLayout());
+        setBackground(Color.DARK_GRAY);
+
+        // Playback switches sinc tables as the speed and pitch sliders move; build them all up front.
+        double maxSpeed = Math.max(RenderEngine.MAX_SPEED, TimeStretcher.MAX_PITCH_SPEED);
+        Thread sincTables = new Thread(() -> Resampler.prepareSincTables(maxSpeed), "sinc-tables");
+        sincTables.setDaemon(true);
+        sincTables.start();
+
+        // --- Basic Controls Panel ---
+        JPanel basicPanel = new JPanel(new BorderLayout());
+        basicPanel.setBackground(Color.DARK_GRAY);
+        
+        // Top row: load, play/pause, and save buttons.
+        JPanel topPanel = new JPanel(new FlowLayout());
+        topPanel.setBackground(Color.DARK_GRAY);
+        loadButton = new JButton("Load Audio File");
+        playButton = new JButton("Play/Pause");
+        saveButton = new JButton("Save Edited Audio");
+        customizeButton(loadButton);
+        customizeButton(playButton);
+        customizeButton(saveButton);
+        parallelRenderCheckBox = new JCheckBox("Multi-core Export", true);
+        customizeCheckBox(parallelRenderCheckBox);
+        metricsOverlayCheckBox = new JCheckBox("Metrics", Boolean.getBoolean("ghibli.metrics.overlay"));
+        customizeCheckBox(metricsOverlayCheckBox);
+        topPanel.add(loadButton);
+        topPanel.add(playButton);
+        topPanel.add(saveButton);
+        topPanel.add(parallelRenderCheckBox);
+        topPanel.add(metricsOverlayCheckBox);
+        basicPanel.add(topPanel, BorderLayout.NORTH);
+
+        // Center: speed/volume sliders and waveform preview.
+        JPanel centerPanel = new JPanel(new BorderLayout());
+        centerPanel.setBackground(Color.DARK_GRAY);
+        JPanel sliderPanel = new JPanel(new GridLayout(6, 3, 5, 5));
+        sliderPanel.setBackground(Color.DARK_GRAY);
+        speedSlider = new JSlider(JSlider.HORIZONTAL, 50, (int) (RenderEngine.MAX_SPEED * 100), 100);
+        volumeSlider = new JSlider(JSlider.HORIZONTAL, 0, 200, 100);
+        customizeSlider(speedSlider);
+        customizeSlider(volumeSlider);
+        speedLabel = new JLabel("Speed: 1.00x");
+        volumeLabel = new JLabel("Volume: 100%");
+        customizeLabel(speedLabel);
+        customizeLabel(volumeLabel);
+        speedTitleLabel = new JLabel("Speed (Pitch/Frequency):");
+        sliderPanel.add(speedTitleLabel);
+        sliderPanel.add(speedSlider);
+        sliderPanel.add(speedLabel);
+        sliderPanel.add(new JLabel("Volume (Amplitude):"));
+        sliderPanel.add(volumeSlider);
+        sliderPanel.add(volumeLabel);
+        qualityComboBox = new JComboBox<>(Resampler.Quality.values());
+        qualityComboBox.setSelectedItem(Resampler.Quality.parse(System.getProperty("ghibli.resample.quality")));
+        sliderPanel.add(new JLabel("Resampling Quality:"));
+        sliderPanel.add(qualityComboBox);
+        preservePitchCheckBox = new JCheckBox("Preserve Pitch");
+        customizeCheckBox(preservePitchCheckBox);
+        sliderPanel.add(preservePitchCheckBox);
+        pitchSlider = new JSlider(JSlider.HORIZONTAL, -12, 12, 0);
+        customizeSlider(pitchSlider);
+        pitchSlider.setEnabled(false);
+        pitchLabel = new JLabel("Pitch: +0 st");
+        customizeLabel(pitchLabel);
+        sliderPanel.add(new JLabel("Pitch Shift (semitones):"));
+        sliderPanel.add(pitchSlider);
+        sliderPanel.add(pitchLabel);
+        normalizeCheckBox = new JCheckBox("Normalize Export");
+        customizeCheckBox(normalizeCheckBox);
+        loudnessTargetSlider = new JSlider(JSlider.HORIZONTAL, -31, -6, -23);
+        customizeSlider(loudnessTargetSlider);
+        loudnessTargetSlider.setEnabled(false);
+        loudnessTargetLabel = new JLabel("Target: -23 LUFS");
+        customizeLabel(loudnessTargetLabel);
+        sliderPanel.add(normalizeCheckBox);
+        sliderPanel.add(loudnessTargetSlider);
+        sliderPanel.add(loudnessTargetLabel);
+        loudnessLabel = new JLabel("-");
+        customizeLabel(loudnessLabel);
+        sliderPanel.add(new JLabel("Loudness:"));
+        sliderPanel.add(loudnessLabel);
+        sliderPanel.add(new JLabel());
+        centerPanel.add(sliderPanel, BorderLayout.NORTH);
+        
+        waveformPanel = new WaveformPanel();
+        centerPanel.add(waveformPanel, BorderLayout.CENTER);
+
+        // Edit row: drag on the waveform to select, click to place the paste point.
+        JPanel editPanel = new JPanel(new FlowLayout());
+        editPanel.setBackground(Color.DARK_GRAY);
+        cutButton = new JButton("Cut");
+        copyButton = new JButton("Copy");
+        pasteButton = new JButton("Paste");
+        deleteButton = new JButton("Delete");
+        trimButton = new JButton("Trim");
+        undoButton = new JButton("Undo");
+        redoButton = new JButton("Redo");
+        for (JButton button : new JButton[] {cutButton, copyButton, pasteButton, deleteButton, trimButton, undoButton, redoButton}) {
+            customizeButton(button);
+            editPanel.add(button);
+        }
+        centerPanel.add(editPanel, BorderLayout.SOUTH);
+        basicPanel.add(centerPanel, BorderLayout.CENTER);
+        
+        // Bottom: progress bar.
+        progressBar = new JProgressBar(0, 100);
+        progressBar.setBackground(Color.GRAY);
+        progressBar.setForeground(new Color(255, 160, 122)); // light salmon accent
+        basicPanel.add(progressBar, BorderLayout.SOUTH);
+
+        // --- Effects Panel ---
+        JPanel effectsPanel = new JPanel(new GridLayout(0, 2, 5, 5));
+        effectsPanel.setBackground(Color.DARK_GRAY);
+        effectsPanel.setBorder(BorderFactory.createTitledBorder(BorderFactory.createLineBorder(new Color(255, 160, 122)), "Effects Options"));
+        customizeTitledBorder(effectsPanel.getBorder());
+        
+        echoCheckBox = new JCheckBox("Echo");
+        echoDelaySlider = new JSlider(JSlider.HORIZONTAL, 50, 500, 200);
+        echoDecaySlider = new JSlider(JSlider.HORIZONTAL, 0, 100, 50);
+        distortionCheckBox = new JCheckBox("Distortion");
+        distortionSlider = new JSlider(JSlider.HORIZONTAL, 0, 100, 0);
+        lowPassCheckBox = new JCheckBox("Low-Pass Filter");
+        lowPassCutoffSlider = new JSlider(JSlider.HORIZONTAL, 500, 5000, 2000);
+        reverbCheckBox = new JCheckBox("Convolution Reverb");
+        reverbMixSlider = new JSlider(JSlider.HORIZONTAL, 0, 100, 30);
+        reverbLoadButton = new JButton("Load Impulse Response...");
+        reverbIrLabel = new JLabel("No impulse response loaded");
+        customizeCheckBox(echoCheckBox);
+        customizeCheckBox(distortionCheckBox);
+        customizeCheckBox(lowPassCheckBox);
+        customizeCheckBox(reverbCheckBox);
+        customizeButton(reverbLoadButton);
+        customizeLabel(reverbIrLabel);
+        customizeSlider(echoDelaySlider);
+        customizeSlider(echoDecaySlider);
+        customizeSlider(distortionSlider);
+        customizeSlider(lowPassCutoffSlider);
+        customizeSlider(reverbMixSlider);
+        
+        effectsPanel.add(echoCheckBox);
+        effectsPanel.add(new JLabel("Echo Delay (ms):"));
+        effectsPanel.add(echoDelaySlider);
+        effectsPanel.add(new JLabel("Echo Decay (%):"));
+        effectsPanel.add(echoDecaySlider);
+        effectsPanel.add(distortionCheckBox);
+        effectsPanel.add(new JLabel("Distortion Level (%):"));
+        effectsPanel.add(distortionSlider);
+        effectsPanel.add(lowPassCheckBox);
+        effectsPanel.add(new JLabel("Low-Pass Cutoff (Hz):"));
+        effectsPanel.add(lowPassCutoffSlider);
+        effectsPanel.add(reverbCheckBox);
+        effectsPanel.add(reverbLoadButton);
+        effectsPanel.add(new JLabel("Reverb Mix (%):"));
+        effectsPanel.add(reverbMixSlider);
+        effectsPanel.add(new JLabel("Impulse Response:"));
+        effectsPanel.add(reverbIrLabel);
+
+        // --- Tracks Panel ---
+        // Stems mixed together, each with its own settings taken from the controls above.
+        JPanel tracksPanel = new JPanel(new BorderLayout(5, 5));
+        tracksPanel.setBackground(Color.DARK_GRAY);
+        tracksPanel.setBorder(BorderFactory.createTitledBorder(BorderFactory.createLineBorder(new Color(255, 160, 122)), "Mix Tracks"));
+        customizeTitledBorder(tracksPanel.getBorder());
+        trackListModel = new DefaultListModel<>();
+        trackList = new JList<>(trackListModel);
+        trackList.setBackground(new Color(60, 63, 65));
+        trackList.setForeground(Color.WHITE);
+        addTrackButton = new JButton("Add Track...");
+        removeTrackButton = new JButton("Remove Track");
+        applyTrackSettingsButton = new JButton("Apply Current Settings");
+        playMixButton = new JButton("Play Mix");
+        exportMixButton = new JButton("Export Mix...");
+        JPanel trackButtons = new JPanel(new FlowLayout());
+        trackButtons.setBackground(Color.DARK_GRAY);
+        for (JButton button : new JButton[] {addTrackButton, removeTrackButton, applyTrackSettingsButton, playMixButton, exportMixButton}) {
+            customizeButton(button);
+            trackButtons.add(button);
+        }
+        tracksPanel.add(new JScrollPane(trackList), BorderLayout.CENTER);
+        tracksPanel.add(trackButtons, BorderLayout.SOUTH);
+
+        // --- Tabbed Pane ---
+        JTabbedPane tabbedPane = new JTabbedPane();
+        tabbedPane.addTab("Basic Controls", basicPanel);
+        tabbedPane.addTab("Effects", effectsPanel);
+        tabbedPane.addTab("Tracks", tracksPanel);
+        add(tabbedPane, BorderLayout.CENTER);
+        
+        // --- Listeners ---
+        // Basic slider listeners update labels and preview waveform.
+        ChangeListener sliderListener = new ChangeListener() {
+            public void stateChanged(ChangeEvent e) {
+                double speedFactor = speedSlider.getValue() / 100.0;
+                speedLabel.setText(String.format("Speed: %.2fx", speedFactor));
+                volumeLabel.setText("Volume: " + volumeSlider.getValue() + "%");
+                pitchLabel.setText(String.format("Pitch: %+d st", pitchSlider.getValue()));
+                settingsChanged();
+            }
+        };
+        speedSlider.addChangeListener(sliderListener);
+        volumeSlider.addChangeListener(sliderListener);
+        pitchSlider.addChangeListener(sliderListener);
+        preservePitchCheckBox.addActionListener(e -> {
+            boolean preserve = preservePitchCheckBox.isSelected();
+            speedTitleLabel.setText(preserve ? "Speed (Tempo):" : "Speed (Pitch/Frequency):");
+            pitchSlider.setEnabled(preserve);
+            settingsChanged();
+        });
+        
+        // Effects listeners update preview.
+        ChangeListener effectsListener = new ChangeListener() {
+            public void stateChanged(ChangeEvent e) {
+                settingsChanged();
+            }
+        };
+        echoDelaySlider.addChangeListener(effectsListener);
+        echoDecaySlider.addChangeListener(effectsListener);
+        distortionSlider.addChangeListener(effectsListener);
+        lowPassCutoffSlider.addChangeListener(effectsListener);
+        reverbMixSlider.addChangeListener(effectsListener);
+        echoCheckBox.addActionListener(e -> settingsChanged());
+        distortionCheckBox.addActionListener(e -> settingsChanged());
+        lowPassCheckBox.addActionListener(e -> settingsChanged());
+        reverbCheckBox.addActionListener(e -> settingsChanged());
+        reverbLoadButton.addActionListener(e -> loadImpulseResponse());
+        normalizeCheckBox.addActionListener(e -> loudnessTargetSlider.setEnabled(normalizeCheckBox.isSelected()));
+        loudnessTargetSlider.addChangeListener(e ->
+                loudnessTargetLabel.setText("Target: " + loudnessTargetSlider.getValue() + " LUFS"));
+        qualityComboBox.addActionListener(e -> settingsChanged());
+        progressTimer = new Timer(1000 / 30, e -> updatePlaybackProgress());
+        metricsTimer = new Timer(250, e -> waveformPanel.repaint());
+        metricsOverlayCheckBox.addActionListener(e -> updateMetricsOverlay());
+        updateMetricsOverlay();
+
+        // Button actions
+        loadButton.addActionListener(e -> loadAudio());
+        playButton.addActionListener(e -> togglePlayback());
+        saveButton.addActionListener(e -> saveEditedAudio());
+        addTrackButton.addActionListener(e -> addTrack());
+        removeTrackButton.addActionListener(e -> removeTrack());
+        applyTrackSettingsButton.addActionListener(e -> applyTrackSettings());
+        playMixButton.addActionListener(e -> toggleMixPlayback());
+        exportMixButton.addActionListener(e -> exportMix());
+        cutButton.addActionListener(e -> cutRegion());
+        copyButton.addActionListener(e -> copyRegion());
+        pasteButton.addActionListener(e -> pasteRegion());
+        deleteButton.addActionListener(e -> deleteRegion());
+        trimButton.addActionListener(e -> trimRegion());
+        undoButton.addActionListener(e -> applyEdits(history.undo(), waveformPanel.getSelectionStart()));
+        redoButton.addActionListener(e -> applyEdits(history.redo(), waveformPanel.getSelectionStart()));
+        updateEditButtons();
+        
+        setSize(800, 550);
+        setLocationRelativeTo(null);
+        setVisible(true);
+    }
+
+    // Helper methods to customize UI components for dark mode & a Ghibli-inspired theme
+    private void customizeButton(JButton btn) {
+        btn.setBackground(new Color(60, 63, 65));
+        btn.setForeground(Color.WHITE);
+        btn.setFocusPainted(false);
+    }
+    
+    private void customizeSlider(JSlider slider) {
+        slider.setBackground(Color.DARK_GRAY);
+        slider.setForeground(new Color(255, 160, 122)); // warm accent color
+    }
+    
+    private void customizeLabel(JLabel label) {
+        label.setForeground(Color.WHITE);
+        label.setFont(new Font("Serif", Font.PLAIN, 14));
+    }
+    
+    private void customizeCheckBox(JCheckBox cb) {
+        cb.setBackground(Color.DARK_GRAY);
+        cb.setForeground(Color.WHITE);
+    }
+    
+    private void customizeTitledBorder(Border border) {
+        // In a real app you might cast and set title color; for simplicity, we'll leave it as default.
+    }
+    
+    // Loads on a background AudioLoader; while it runs the load button cancels instead. The new
+    // source is swapped in as soon as the file is open, so playback can start before it is fully
+    // read, and the waveform fills in as the loader indexes it. A running save holds the current
+    // file and the save button, which is its cancel control, so no load starts until it ends.
+    private void loadAudio() {
+        if (loader != null) {
+            loader.cancel();
+            return;
+        }
+        if (saving) {
+            JOptionPane.showMessageDialog(this, "Wait for the save to finish or cancel it before loading another file.");
+            return;
+        }
+        JFileChooser chooser = new JFileChooser();
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        audioFile = chooser.getSelectedFile();
+        loadButton.setText("Cancel Load");
+        saveButton.setEnabled(false);
+        loader = new AudioLoader(audioFile, peakCache, new AudioLoader.Listener() {
+            private boolean opened;
+            private boolean previewRequested;
+
+            public void opened(SampleSource newSource, PeakIndex cachedOverview) {
+                opened = true;
+                if (playing) {
+                    stopPlayback();
+                }
+                playbackEngine = null;
+                currentFrame = 0;
+                renderCache.clear();
+                SampleSource replaced = loadedSource;
+                loadedFile = audioFile;
+                loadedSource = newSource;
+                source = newSource;
+                if (replaced != null) {
+                    sourceReaders.retire(replaced);
+                }
+                history = null;
+                clipboard = null;
+                updateEditButtons();
+                originalFormat = source.getFormat();
+                if (impulseResponse != null) {
+                    // Resampling the IR to the new rate and transforming it is too slow for the EDT.
+                    ImpulseResponse ir = impulseResponse;
+                    AudioFormat format = originalFormat;
+                    new Thread(() -> {
+                        ConvolutionProcessor.DelayLine delayLine = ConvolutionProcessor.DelayLine
+                                .prepare(ir, format.getChannels(), format.getSampleRate());
+                        if (impulseResponse == ir) reverbDelayLine.set(delayLine);
+                    }, "ir-prepare").start();
+                }
+                waveformPanel.setSource(cachedOverview);
+            }
+
+            public void progress(PeakIndex partial, long framesLoaded, long expectedFrames) {
+                if (partial != null) {
+                    waveformPanel.updateOverview(partial, expectedFrames);
+                }
+                loadButton.setText(expectedFrames > 0
+                        ? String.format("Cancel Load (%d%%)", 100 * framesLoaded / expectedFrames)
+                        : String.format("Cancel Load (%.0f s)", framesLoaded / originalFormat.getSampleRate()));
+                if (!previewRequested && framesLoaded >= previewFrameCount) {
+                    previewRequested = true;
+                    updatePreviewWaveform();
+                }
+            }
+
+            public void finished(PeakIndex overview, AudioLoader.Stats stats) {
+                loadFinished();
+                history = new EditHistory(PieceTable.of(loadedSource.getFrameCount()), MAX_UNDO);
+                updateEditButtons();
+                analyzeLoudness();
+                waveformPanel.updateOverview(overview, overview.getFrameCount());
+                updatePreviewWaveform();
+                JOptionPane.showMessageDialog(GhibliAudioEditor.this, String.format(
+                        "Audio loaded successfully.%nPeak: %.1f dBFS, RMS: %.1f dBFS%n%s",
+                        toDecibels(overview.getOverallPeak()), toDecibels(overview.getOverallRms()), stats));
+            }
+
+            public void cancelled() {
+                loadFinished();
+                unloadAudio();
+            }
+
+            public void failed(Exception ex) {
+                ex.printStackTrace();
+                loadFinished();
+                if (opened) {
+                    unloadAudio();
+                }
+                JOptionPane.showMessageDialog(GhibliAudioEditor.this, "Error loading audio: " + ex.getMessage());
+            }
+        });
+        loader.start();
+    }
+
+    private void loadFinished() {
+        loader = null;
+        loadButton.setText("Load Audio File");
+        saveButton.setEnabled(true);
+    }
+
+    // Drops a source the loader gave up on (cancelled or failed part way); it is closed once
+    // playback has stopped and background readers are done with it.
+    private void unloadAudio() {
+        if (playing) {
+            stopPlayback();
+        }
+        playbackEngine = null;
+        currentFrame = 0;
+        renderCache.clear();
+        SampleSource dropped = loadedSource;
+        source = null;
+        loadedSource = null;
+        loadedFile = null;
+        if (dropped != null) {
+            sourceReaders.retire(dropped);
+        }
+        loudnessGeneration.incrementAndGet();
+        loudnessLabel.setText("-");
+        history = null;
+        clipboard = null;
+        updateEditButtons();
+        originalFormat = null;
+        waveformPanel.setSource(null);
+    }
+
+    // Decodes the IR and builds its spectra and a delay line off the EDT; playback picks both up
+    // with the next settings snapshot, so the audio thread never waits on the file, the FFTs or
+    // the allocation.
+    private void loadImpulseResponse() {
+        JFileChooser chooser = new JFileChooser();
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        File file = chooser.getSelectedFile();
+        reverbLoadButton.setEnabled(false);
+        reverbIrLabel.setText("Loading " + file.getName() + "...");
+        SampleSource current = source;
+        new Thread(() -> {
+            try {
+                ImpulseResponse ir = ImpulseResponse.load(file);
+                ConvolutionProcessor.DelayLine delayLine = current == null ? null : ConvolutionProcessor.DelayLine
+                        .prepare(ir, current.getFormat().getChannels(), current.getFormat().getSampleRate());
+                SwingUtilities.invokeLater(() -> {
+                    impulseResponse = ir;
+                    reverbDelayLine.set(delayLine);
+                    reverbIrLabel.setText(file.getName());
+                    reverbLoadButton.setEnabled(true);
+                    reverbCheckBox.setSelected(true);
+                    settingsChanged();
+                });
+            } catch (Exception ex) {
+                ex.printStackTrace();
+                SwingUtilities.invokeLater(() -> {
+                    reverbIrLabel.setText(impulseResponse == null ? "No impulse response loaded" : impulseResponse.getFile().getName());
+                    reverbLoadButton.setEnabled(true);
+                    JOptionPane.showMessageDialog(this, "Error loading impulse response: " + ex.getMessage());
+                });
+            }
+        }, "ir-loader").start();
+    }
+
+    // Adds a stem with the current control settings. Opening may decode the whole file, so it runs
+    // off the EDT.
+    private void addTrack() {
+        JFileChooser chooser = new JFileChooser();
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        File file = chooser.getSelectedFile();
+        EffectSettings settings = currentSettings();
+        addTrackButton.setEnabled(false);
+        new Thread(() -> {
+            try {
+                Track track = new Track(file, MappedSampleSource.open(file), settings);
+                SwingUtilities.invokeLater(() -> {
+                    discardMix();
+                    trackListModel.addElement(track);
+                    addTrackButton.setEnabled(true);
+                });
+            } catch (Exception ex) {
+                ex.printStackTrace();
+                SwingUtilities.invokeLater(() -> {
+                    addTrackButton.setEnabled(true);
+                    JOptionPane.showMessageDialog(this, "Error loading track: " + ex.getMessage());
+                });
+            }
+        }, "track-loader").start();
+    }
+
+    // A running export still reads every track it started with, so tracks stay until it ends.
+    private void removeTrack() {
+        Track track = trackList.getSelectedValue();
+        if (track == null) return;
+        if (exportingMix) {
+            JOptionPane.showMessageDialog(this, "Wait for the mix export to finish or cancel it before removing tracks.");
+            return;
+        }
+        discardMix();
+        trackListModel.removeElement(track);
+        track.getSource().close();
+    }
+
+    // Takes effect from the next block if the mix is playing.
+    private void applyTrackSettings() {
+        Track track = trackList.getSelectedValue();
+        if (track == null) {
+            JOptionPane.showMessageDialog(this, "Select a track first.");
+            return;
+        }
+        track.setSettings(currentSettings());
+    }
+
+    private Mixer createMixer(boolean live) {
+        if (trackListModel.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "Please add a track first.");
+            return null;
+        }
+        try {
+            return new Mixer(Collections.list(trackListModel.elements()),
+                    live ? playbackBlockSize : renderBlockSize, mixPool, live, reverbDelayLine);
+        } catch (IllegalArgumentException ex) {
+            JOptionPane.showMessageDialog(this, ex.getMessage());
+            return null;
+        }
+    }
+
+    // Pauses and resumes the same mixer, so playback picks up at the frame last heard.
+    private void toggleMixPlayback() {
+        if (mixPlayback != null && mixPlayback.isRunning()) {
+            stopMix();
+            return;
+        }
+        if (mixPlayback == null) {
+            Mixer mixer = createMixer(true);
+            if (mixer == null) return;
+            mixPlayback = new MixPlayback(mixer, playbackLatencyMs);
+        }
+        if (playing) {
+            stopPlayback();
+        }
+        MixPlayback playback = mixPlayback;
+        playMixButton.setText("Pause Mix");
+        playback.start(() -> SwingUtilities.invokeLater(() -> {
+            if (mixPlayback == playback) stopMix();
+        }), e -> SwingUtilities.invokeLater(() -> {
+            e.printStackTrace();
+            if (mixPlayback == playback) stopMix();
+            JOptionPane.showMessageDialog(this, "Mix playback failed: " + e.getMessage());
+        }));
+    }
+
+    // Pauses the mix; its position is kept for the next play.
+    private void stopMix() {
+        if (mixPlayback == null) return;
+        mixPlayback.stop();
+        playMixButton.setText("Play Mix");
+    }
+
+    // Stops the mix and drops its mixer, whose track list no longer matches the tracks tab.
+    private void discardMix() {
+        stopMix();
+        mixPlayback = null;
+    }
+
+    // Renders off the EDT; the export button doubles as the cancel action meanwhile. An export and
+    // a save share saveCancelled, so only one of them runs at a time.
+    private void exportMix() {
+        if (exportingMix) {
+            saveCancelled = true;
+            return;
+        }
+        if (saving) {
+            JOptionPane.showMessageDialog(this, "Wait for the save to finish or cancel it before exporting the mix.");
+            return;
+        }
+        Mixer mixer = createMixer(false);
+        if (mixer == null) return;
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setDialogTitle("Export Mix As");
+        if (fileChooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        File outFile = fileChooser.getSelectedFile();
+        if (isOpenFile(outFile)) {
+            JOptionPane.showMessageDialog(this, outFile.getName() + " is open in the editor and is read while"
+                    + " the mix renders.\nChoose a different file.");
+            return;
+        }
+        exportingMix = true;
+        saveCancelled = false;
+        exportMixButton.setText("Cancel Export");
+        new Thread(() -> {
+            RenderMonitor monitor = new RenderMonitor() {
+                private int lastProgress = -1;
+
+                public void progress(long framesDone, long totalFrames) {
+                    int progress = (int) (100.0 * framesDone / totalFrames);
+                    if (progress != lastProgress) {
+                        lastProgress = progress;
+                        SwingUtilities.invokeLater(() -> progressBar.setValue(progress));
+                    }
+                }
+
+                public boolean isCancelled() {
+                    return saveCancelled;
+                }
+            };
+            // As with a save, every outcome ends the export and restores the button.
+            String message = "Error exporting mix.";
+            try (WavWriter out = WavWriter.create(outFile.toPath(), mixer.getFormat())) {
+                mixer.renderTo(out, mixer.getFrameCount(), monitor);
+                message = "Mix exported successfully.";
+            } catch (CancellationException ex) {
+                message = "Export cancelled.";
+            } catch (IOException ex) {
+                ex.printStackTrace();
+                message = "Error exporting mix: " + ex.getMessage();
+            } catch (RuntimeException | Error ex) {
+                ex.printStackTrace();
+                message = "Error exporting mix: " + ex;
+            } finally {
+                if (saveCancelled) {
+                    outFile.delete();
+                }
+                String result = message;
+                SwingUtilities.invokeLater(() -> {
+                    exportingMix = false;
+                    exportMixButton.setText("Export Mix...");
+                    JOptionPane.showMessageDialog(this, result);
+                });
+            }
+        }, "mix-export").start();
+    }
+
+    private void cutRegion() {
+        if (!hasSelection()) return;
+        long start = waveformPanel.getSelectionStart();
+        long end = waveformPanel.getSelectionEnd();
+        clipboard = history.getCurrent().slice(start, end);
+        history.apply(history.getCurrent().delete(start, end));
+        applyEdits(history.getCurrent(), start);
+    }
+
+    private void copyRegion() {
+        if (!hasSelection()) return;
+        clipboard = history.getCurrent().slice(waveformPanel.getSelectionStart(), waveformPanel.getSelectionEnd());
+        updateEditButtons();
+    }
+
+    // Inserts the clipboard at the selection, replacing it if it spans any frames.
+    private void pasteRegion() {
+        if (clipboard == null) return;
+        long start = waveformPanel.getSelectionStart();
+        long end = waveformPanel.getSelectionEnd();
+        history.apply(history.getCurrent().delete(start, end).insert(start, clipboard));
+        applyEdits(history.getCurrent(), start + clipboard.getFrameCount());
+    }
+
+    private void deleteRegion() {
+        if (!hasSelection()) return;
+        long start = waveformPanel.getSelectionStart();
+        history.apply(history.getCurrent().delete(start, waveformPanel.getSelectionEnd()));
+        applyEdits(history.getCurrent(), start);
+    }
+
+    // Keeps only the selection.
+    private void trimRegion() {
+        if (!hasSelection()) return;
+        history.apply(history.getCurrent().slice(waveformPanel.getSelectionStart(), waveformPanel.getSelectionEnd()));
+        applyEdits(history.getCurrent(), 0);
+    }
+
+    private boolean hasSelection() {
+        if (waveformPanel.getSelectionEnd() > waveformPanel.getSelectionStart()) return true;
+        JOptionPane.showMessageDialog(this, "Drag on the waveform to select a region first.");
+        return false;
+    }
+
+    // Points playback, preview and export at the file read through edits. Only the edit list
+    // changes; the loaded samples are never copied. Unedited audio reads the loaded source
+    // directly, so its render cache entries are reused after undoing every edit.
+    private void applyEdits(PieceTable edits, long caret) {
+        if (playing) {
+            stopPlayback();
+        }
+        playbackEngine = null;
+        boolean unedited = edits.getPieceCount() == 1 && edits.getSourceStart(0) == 0
+                && edits.getFrameCount() == loadedSource.getFrameCount();
+        source = unedited ? loadedSource : new EditedSampleSource(loadedSource, edits);
+        caret = Math.min(caret, edits.getFrameCount());
+        currentFrame = caret;
+        waveformPanel.setEdits(unedited ? null : edits);
+        waveformPanel.setSelection(caret, caret);
+        progressBar.setValue(edits.getFrameCount() == 0 ? 0 : (int) (100.0 * caret / edits.getFrameCount()));
+        updateEditButtons();
+        updatePreviewWaveform();
+        analyzeLoudness();
+    }
+
+    private void updateEditButtons() {
+        boolean editable = history != null;
+        for (JButton button : new JButton[] {cutButton, copyButton, deleteButton, trimButton}) {
+            button.setEnabled(editable);
+        }
+        pasteButton.setEnabled(editable && clipboard != null);
+        undoButton.setEnabled(editable && history.canUndo());
+        redoButton.setEnabled(editable && history.canRedo());
+    }
+
+    // Measures the current audio on all cores, one analysis at a time on loudnessExecutor. The
+    // newest request wins, as in PreviewScheduler: a newer load or edit stops the running analysis,
+    // requests queued behind it are skipped, and only the newest result reaches the label.
+    private void analyzeLoudness() {
+        long generation = loudnessGeneration.incrementAndGet();
+        if (source == null) return;
+        loudnessLabel.setText("Analyzing...");
+        loudnessExecutor.execute(() -> {
+            if (loudnessGeneration.get() != generation) return;
+            SampleSource analyzed = sourceReaders.acquire(() -> source);
+            if (analyzed == null) return;
+            RenderMonitor monitor = new RenderMonitor() {
+                public void progress(long framesDone, long totalFrames) {
+                }
+
+                public boolean isCancelled() {
+                    return loudnessGeneration.get() != generation;
+                }
+            };
+            String text;
+            try {
+                LoudnessAnalyzer.Result result = LoudnessAnalyzer.analyze(analyzed, ForkJoinPool.commonPool(), monitor);
+                text = String.format("%.1f LUFS, %.1f dBTP", result.integrated, result.truePeak);
+            } catch (CancellationException ex) {
+                return; // superseded by a newer request
+            } catch (RuntimeException ex) {
+                ex.printStackTrace();
+                text = "Analysis failed: " + ex.getMessage();
+            } finally {
+                sourceReaders.release(analyzed);
+            }
+            String label = text;
+            SwingUtilities.invokeLater(() -> {
+                if (loudnessGeneration.get() == generation) loudnessLabel.setText(label);
+            });
+        });
+    }
+
+    private static double toDecibels(float level) {
+        return 20 * Math.log10(Math.max(level, 1e-9f));
+    }
+
+    private void togglePlayback() {
+        if (source == null) {
+            JOptionPane.showMessageDialog(this, "Please load an audio file first.");
+            return;
+        }
+        if (!playing) {
+            stopMix();
+            if (playbackEngine == null) {
+                playbackEngine = new PlaybackEngine(source, currentSettings(), reverbDelayLine, playbackBlockSize, playbackLatencyMs);
+            }
+            playbackEngine.setSettings(currentSettings());
+            playbackEngine.setPosition(currentFrame);
+            playing = true;
+            playButton.setText("Pause");
+            progressTimer.start();
+            playbackEngine.start(() -> SwingUtilities.invokeLater(this::playbackFinished),
+                    e -> SwingUtilities.invokeLater(() -> playbackFailed(e)));
+        } else {
+            stopPlayback();
+        }
+    }
+
+    // Pauses playback; the next play resumes from currentFrame.
+    private void stopPlayback() {
+        if (playbackEngine != null) {
+            playbackEngine.stop();
+            currentFrame = playbackEngine.getPosition();
+        }
+        playing = false;
+        playButton.setText("Play");
+        progressTimer.stop();
+        updatePlaybackProgress();
+    }
+
+    private void playbackFinished() {
+        if (playbackEngine != null && playbackEngine.isRunning()) return; // restarted meanwhile
+        playing = false;
+        currentFrame = 0;
+        playButton.setText("Play");
+        progressTimer.stop();
+        progressBar.setValue(100);
+    }
+
+    // The audio device could not be opened, or rendering failed; playback stops where it was.
+    private void playbackFailed(Exception e) {
+        e.printStackTrace();
+        if (playbackEngine != null && playbackEngine.isRunning()) return; // restarted meanwhile
+        playing = false;
+        playButton.setText("Play");
+        progressTimer.stop();
+        if (playbackEngine != null) {
+            currentFrame = playbackEngine.getPosition();
+        }
+        updatePlaybackProgress();
+        JOptionPane.showMessageDialog(this, "Playback failed: " + e.getMessage());
+    }
+
+    // Polled by progressTimer at display rate rather than pushed from the audio thread.
+    private void updatePlaybackProgress() {
+        if (playbackEngine == null || source == null || source.getFrameCount() == 0) return;
+        if (playing) {
+            currentFrame = playbackEngine.getPosition();
+        }
+        progressBar.setValue((int) (100.0 * Math.min(currentFrame, source.getFrameCount()) / source.getFrameCount()));
+    }
+
+    // Pushes the current slider state to live playback (lock-free) and schedules a preview.
+    private void settingsChanged() {
+        EffectSettings settings = currentSettings();
+        if (playbackEngine != null) {
+            playbackEngine.setSettings(settings);
+        }
+        if (source != null) {
+            previewScheduler.request(settings);
+        }
+    }
+
+    // Snapshot of the current slider and checkbox state for the render engine.
+    private EffectSettings currentSettings() {
+        return new EffectSettings(
+                speedSlider.getValue() / 100.0,
+                volumeSlider.getValue() / 100.0,
+                echoCheckBox.isSelected(),
+                echoDelaySlider.getValue(),
+                echoDecaySlider.getValue() / 100.0,
+                distortionCheckBox.isSelected(),
+                distortionSlider.getValue() / 100.0,
+                lowPassCheckBox.isSelected(),
+                lowPassCutoffSlider.getValue(),
+                reverbCheckBox.isSelected(),
+                reverbMixSlider.getValue() / 100.0,
+                impulseResponse,
+                (Resampler.Quality) qualityComboBox.getSelectedItem(),
+                preservePitchCheckBox.isSelected(),
+                pitchSlider.getValue());
+    }
+
+    private byte[] processPreviewAudio(SampleSource source, EffectSettings settings, RenderMonitor monitor) {
+        int framesToProcess = (int) Math.min(previewFrameCount, source.getFrameCount());
+        int newFrameCount = (int) (framesToProcess / settings.speed);
+        ByteArrayOutputStream previewBytes = new ByteArrayOutputStream(newFrameCount * source.getFormat().getFrameSize());
+        try {
+            renderCache.renderTo(source, settings, newFrameCount,
+                    (out, frames, m) -> previewRenderer.renderTo(source, settings, (int) frames, out, m),
+                    previewBytes, monitor);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return previewBytes.toByteArray();
+    }
+
+    // Runs on the preview worker; throws CancellationException once a newer request supersedes it.
+    private PeakIndex renderPreview(EffectSettings settings, RenderMonitor monitor) {
+        SampleSource source = sourceReaders.acquire(() -> this.source);
+        if (source == null) throw new CancellationException();
+        try {
+            byte[] previewBytes = processPreviewAudio(source, settings, monitor);
+            return PeakIndex.build(new ByteArraySampleSource(previewBytes, source.getFormat()));
+        } finally {
+            sourceReaders.release(source);
+        }
+    }
+
+    // Streams the processed audio to out so the render never sits in memory. The parallel mode
+    // produces the same bytes as the serial one, just spread across cores. Time-stretching carries
+    // state from window to window, so it always renders serially. Settings saved or previewed
+    // before are replayed from the render cache.
+    private void processEntireAudio(SampleSource source, EffectSettings settings, boolean parallel,
+                                    OutputStream outStream, RenderMonitor monitor) throws IOException {
+        long frames = RenderEngine.getOutputFrameCount(source, settings.speed);
+        RenderCache.Renderer renderer;
+        if (parallel && !settings.preservePitch) {
+            renderer = (out, length, m) -> new ParallelRenderer(source, settings,
+                    ParallelRenderer.DEFAULT_CHUNK_FRAMES, ForkJoinPool.commonPool()).renderTo(out, length, m);
+        } else {
+            renderer = (out, length, m) -> new RenderEngine(source, settings, renderBlockSize).renderTo(out, length, m);
+        }
+        renderCache.renderTo(source, settings, frames, renderer, outStream, monitor);
+    }
+
+    // Renders once into a loudness meter, nothing kept, then renders again to out with the gain that
+    // brings it to target without the true peak passing TRUE_PEAK_CEILING. The gain is a stage
+    // after every effect. Normalized output skips the render cache, whose keys don't include the
+    // gain. Returns a summary for the user.
+    private String processNormalized(SampleSource source, EffectSettings settings, boolean parallel, double target,
+                                     OutputStream outStream, RenderMonitor monitor) throws IOException {
+        LoudnessAnalyzer.Result measured = LoudnessAnalyzer.analyzeRender(source, settings, renderBlockSize,
+                ForkJoinPool.commonPool(), phase(monitor, 0, 0.5));
+        double gainDb = measured.gainTo(target, TRUE_PEAK_CEILING);
+        EffectChain chain = EffectChain.fromSettings(settings, source.getFormat())
+                .withOutputGain((float) Math.pow(10, gainDb / 20));
+        long frames = RenderEngine.getOutputFrameCount(source, settings.speed);
+        RenderMonitor exportMonitor = phase(monitor, 0.5, 1);
+        if (parallel && !settings.preservePitch) {
+            new ParallelRenderer(source, settings, chain, ParallelRenderer.DEFAULT_CHUNK_FRAMES,
+                    ForkJoinPool.commonPool()).renderTo(outStream, frames, exportMonitor);
+        } else {
+            new RenderEngine(source, chain, settings, renderBlockSize).renderTo(outStream, frames, exportMonitor);
+        }
+        String summary = String.format("Measured %s.%nApplied %+.1f dB: %.1f LUFS, %.1f dBTP.",
+                measured, gainDb, measured.integrated + gainDb, measured.truePeak + gainDb);
+        if (!Double.isInfinite(measured.integrated) && gainDb < target - measured.integrated - 0.05) {
+            summary += String.format("%nGain limited by the %.0f dBTP true-peak ceiling.", TRUE_PEAK_CEILING);
+        }
+        return summary;
+    }
+
+    // Reports one phase of a longer job as the share [from, to) of its progress.
+    private static RenderMonitor phase(RenderMonitor monitor, double from, double to) {
+        return new RenderMonitor() {
+            public void progress(long framesDone, long totalFrames) {
+                monitor.progress((long) (1000 * (from + (to - from) * framesDone / totalFrames)), 1000);
+            }
+
+            public boolean isCancelled() {
+                return monitor.isCancelled();
+            }
+        };
+    }
+
+    private void saveEditedAudio() {
+        if (saving) {
+            saveCancelled = true;
+            return;
+        }
+        if (exportingMix) {
+            JOptionPane.showMessageDialog(this, "Wait for the mix export to finish or cancel it before saving.");
+            return;
+        }
+        if (source == null) {
+            JOptionPane.showMessageDialog(this, "Please load an audio file first.");
+            return;
+        }
+        EffectSettings settings = currentSettings();
+        boolean normalize = normalizeCheckBox.isSelected();
+        double loudnessTarget = loudnessTargetSlider.getValue();
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setDialogTitle("Save Edited Audio As");
+        int userSelection = fileChooser.showSaveDialog(this);
+        if (userSelection == JFileChooser.APPROVE_OPTION) {
+            File outFile = fileChooser.getSelectedFile();
+            if (isOpenFile(outFile)) {
+                JOptionPane.showMessageDialog(this, outFile.getName() + " is open in the editor and is read while"
+                        + " the save renders.\nChoose a different file.");
+                return;
+            }
+            SampleSource source = sourceReaders.acquire(() -> this.source);
+            boolean parallel = parallelRenderCheckBox.isSelected();
+            saving = true;
+            saveCancelled = false;
+            saveButton.setText("Cancel Save");
+            // Render off the EDT; the save button doubles as the cancel action meanwhile.
+            new Thread(() -> {
+                RenderMonitor monitor = new RenderMonitor() {
+                    private int lastProgress = -1;
+
+                    public void progress(long framesDone, long totalFrames) {
+                        int progress = (int) (100.0 * framesDone / totalFrames);
+                        if (progress != lastProgress) {
+                            lastProgress = progress;
+                            SwingUtilities.invokeLater(() -> progressBar.setValue(progress));
+                        }
+                    }
+
+                    public boolean isCancelled() {
+                        return saveCancelled;
+                    }
+                };
+                // Whatever the render throws, the save ends and its controls are given back.
+                String message = "Error saving audio.";
+                try (WavWriter out = WavWriter.create(outFile.toPath(), source.getFormat())) {
+                    if (normalize) {
+                        message = "File saved successfully.\n"
+                                + processNormalized(source, settings, parallel, loudnessTarget, out, monitor);
+                    } else {
+                        processEntireAudio(source, settings, parallel, out, monitor);
+                        message = "File saved successfully.";
+                    }
+                } catch (CancellationException ex) {
+                    message = "Save cancelled.";
+                } catch (IOException ex) {
+                    ex.printStackTrace();
+                    message = "Error saving audio: " + ex.getMessage();
+                } catch (RuntimeException | Error ex) {
+                    ex.printStackTrace();
+                    message = "Error saving audio: " + ex;
+                } finally {
+                    sourceReaders.release(source);
+                    if (saveCancelled) {
+                        outFile.delete();
+                    }
+                    String result = message;
+                    SwingUtilities.invokeLater(() -> {
+                        saving = false;
+                        saveButton.setText("Save Edited Audio");
+                        JOptionPane.showMessageDialog(this, result);
+                    });
+                }
+            }, "save").start();
+        }
+    }
+
+    // True if writing file would overwrite audio the editor has open: the loaded file or a track.
+    // Open files are mapped or still being read, so truncating one mid-render faults the reads and
+    // destroys the original.
+    private boolean isOpenFile(File file) {
+        if (isSameFile(file, loadedFile)) return true;
+        for (int i = 0; i < trackListModel.getSize(); i++) {
+            if (isSameFile(file, trackListModel.getElementAt(i).getFile())) return true;
+        }
+        return false;
+    }
+
+    private static boolean isSameFile(File a, File b) {
+        if (a == null || b == null || !a.exists() || !b.exists()) return false;
+        try {
+            return Files.isSameFile(a.toPath(), b.toPath());
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private void updateMetricsOverlay() {
+        if (metricsOverlayCheckBox.isSelected()) {
+            metricsTimer.start();
+        } else {
+            metricsTimer.stop();
+        }
+        waveformPanel.repaint();
+    }
+
+    private void updatePreviewWaveform() {
+        if (source == null || originalFormat == null) return;
+        previewScheduler.request(currentSettings());
+    }
+
+    class WaveformPanel extends JPanel {
+        private static final long serialVersionUID = 1L;
+        private final Color overviewColor = new Color(120, 100, 90);
+        private final Color previewColor = new Color(255, 160, 122);
+        private final Color selectionColor = new Color(255, 255, 255, 48);
+        private PeakIndex overview;      // the loaded file
+        private PieceTable edits;        // maps the timeline onto the overview; null when unedited
+        private long selectionAnchor;    // timeline frame where the drag started
+        private long selectionStart;     // selected timeline frames [selectionStart, selectionEnd)
+        private long selectionEnd;
+        private PeakIndex preview;       // processed preview window, drawn over the start of the file
+        private double previewSpeed = 1.0;
+        private long previewRequestedAt; // non-zero until the preview's first repaint
+        private long viewStart;          // first visible source frame
+        private double framesPerPixel;   // 0 = fit the whole file
+        private long timelineFrames;     // full length while the overview is still loading
+        private final int[] peaks = new int[2];
+
+        public WaveformPanel() {
+            setPreferredSize(new Dimension(600, 150));
+            setBackground(Color.BLACK);
+            setToolTipText(""); // registers with the tooltip manager; text comes from getToolTipText
+            // Wheel zooms around the cursor, shift+wheel scrolls.
+            addMouseWheelListener(e -> {
+                if (overview == null) return;
+                double fpp = getFramesPerPixel();
+                if (e.isShiftDown()) {
+                    viewStart += (long) (e.getPreciseWheelRotation() * getWidth() / 8 * fpp);
+                } else {
+                    double anchor = viewStart + e.getX() * fpp;
+                    double fitFpp = (double) getTimelineFrames() / Math.max(1, getWidth());
+                    fpp = Math.max(1.0, Math.min(fitFpp, fpp * Math.pow(1.25, e.getPreciseWheelRotation())));
+                    framesPerPixel = fpp;
+                    viewStart = (long) (anchor - e.getX() * fpp);
+                }
+                clampView();
+                repaint();
+            });
+            // Press places the caret, drag extends the selection from it.
+            MouseAdapter selector = new MouseAdapter() {
+                @Override
+                public void mousePressed(MouseEvent e) {
+                    if (overview == null) return;
+                    selectionAnchor = toTimelineFrame(e.getX());
+                    setSelection(selectionAnchor, selectionAnchor);
+                }
+
+                @Override
+                public void mouseDragged(MouseEvent e) {
+                    if (overview == null) return;
+                    long frame = toTimelineFrame(e.getX());
+                    setSelection(Math.min(selectionAnchor, frame), Math.max(selectionAnchor, frame));
+                }
+            };
+            addMouseListener(selector);
+            addMouseMotionListener(selector);
+        }
+
+        public void setSource(PeakIndex overview) {
+            this.overview = overview;
+            this.preview = null;
+            edits = null;
+            selectionStart = selectionEnd = 0;
+            viewStart = 0;
+            framesPerPixel = 0;
+            timelineFrames = 0;
+            repaint();
+        }
+
+        // Swaps in a more complete overview of the same file, keeping the view. timelineFrames is
+        // the expected full length (-1 if unknown), so a partial overview is drawn to final scale.
+        public void updateOverview(PeakIndex overview, long timelineFrames) {
+            this.overview = overview;
+            this.timelineFrames = timelineFrames;
+            repaint();
+        }
+
+        private long getTimelineFrames() {
+            if (edits != null) return edits.getFrameCount();
+            return Math.max(overview.getFrameCount(), timelineFrames);
+        }
+
+        // Draws the overview through an edit list, or straight when edits is null. The selection
+        // is the caller's to reset.
+        public void setEdits(PieceTable edits) {
+            this.edits = edits;
+            this.preview = null;
+            clampView();
+            repaint();
+        }
+
+        public long getSelectionStart() {
+            return selectionStart;
+        }
+
+        public long getSelectionEnd() {
+            return selectionEnd;
+        }
+
+        public void setSelection(long start, long end) {
+            selectionStart = start;
+            selectionEnd = end;
+            repaint();
+        }
+
+        private long toTimelineFrame(int x) {
+            long frame = viewStart + (long) (Math.max(0, x) * getFramesPerPixel());
+            return Math.min(frame, getTimelineFrames());
+        }
+
+        // speed maps preview frames back onto source frames so the overlay lines up in time.
+        public void setPreview(PeakIndex preview, double speed, long requestedAt) {
+            this.preview = preview;
+            this.previewSpeed = speed;
+            this.previewRequestedAt = requestedAt;
+            repaint();
+        }
+
+        @Override
+        public String getToolTipText(MouseEvent e) {
+            return "<html>Preview latency: " + previewLatency + "<br>Render cache: " + renderCache
+                    + "<br>Preview stages: " + previewRenderer.getTimings() + "</html>";
+        }
+
+        private double getFramesPerPixel() {
+            if (framesPerPixel > 0) return framesPerPixel;
+            return Math.max(1.0, (double) getTimelineFrames() / Math.max(1, getWidth()));
+        }
+
+        private void clampView() {
+            long maxStart = getTimelineFrames() - (long) (getWidth() * getFramesPerPixel());
+            viewStart = Math.max(0, Math.min(viewStart, maxStart));
+        }
+
+        @Override
+        protected void paintComponent(Graphics g) {
+            super.paintComponent(g);
+            paintWaveforms(g);
+            if (metricsOverlayCheckBox.isSelected()) {
+                g.setColor(Color.WHITE);
+                g.setFont(getFont().deriveFont(11f));
+                int lineHeight = g.getFontMetrics().getHeight();
+                int y = lineHeight;
+                for (String line : Telemetry.summary()) {
+                    g.drawString(line, 6, y);
+                    y += lineHeight;
+                }
+            }
+        }
+
+        private void paintWaveforms(Graphics g) {
+            if (overview == null) return;
+            int width = getWidth();
+            int mid = getHeight() / 2;
+            double fpp = getFramesPerPixel();
+            // Selection, or a one-pixel caret where paste inserts.
+            int x0 = (int) ((selectionStart - viewStart) / fpp);
+            int x1 = (int) ((selectionEnd - viewStart) / fpp);
+            g.setColor(selectionColor);
+            g.fillRect(x0, 0, Math.max(1, x1 - x0), getHeight());
+            // One bounded peak query per column (per edit piece it spans), so repaint cost depends
+            // on width, not file length.
+            g.setColor(overviewColor);
+            for (int x = 0; x < width; x++) {
+                long start = viewStart + (long) (x * fpp);
+                long end = Math.max(start + 1, viewStart + (long) ((x + 1) * fpp));
+                boolean found = edits != null ? edits.getPeaks(overview, start, end, peaks)
+                        : overview.getPeaks(start, end, peaks);
+                if (found) {
+                    g.drawLine(x, mid - peaks[1] * mid / 32768, x, mid - peaks[0] * mid / 32768);
+                }
+            }
+            if (preview == null) return;
+            g.setColor(previewColor);
+            for (int x = 0; x < width; x++) {
+                long start = (long) ((viewStart + x * fpp) / previewSpeed);
+                long end = Math.max(start + 1, (long) ((viewStart + (x + 1) * fpp) / previewSpeed));
+                if (start >= preview.getFrameCount()) break;
+                if (preview.getPeaks(start, end, peaks)) {
+                    g.drawLine(x, mid - peaks[1] * mid / 32768, x, mid - peaks[0] * mid / 32768);
+                }
+            }
+            if (previewRequestedAt != 0) {
+                previewLatency.record(System.nanoTime() - previewRequestedAt);
+                previewRequestedAt = 0;
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Telemetry.registerMBeans();
+        // Headless batch and server modes never touch Swing, so it also runs on servers without a display.
+        if (args.length > 0 && args[0].equals("--batch")) {
+            System.exit(BatchRenderer.run(Arrays.copyOfRange(args, 1, args.length)));
+        }
+        if (args.length > 0 && args[0].equals("--serve")) {
+            System.exit(RenderServer.run(Arrays.copyOfRange(args, 1, args.length)));
+        }
+        // Set UIManager properties for a dark look and Ghibli-inspired accents.
+        UIManager.put("Panel.background", Color.DARK_GRAY);
+        UIManager.put("OptionPane.background", Color.DARK_GRAY);
+        UIManager.put("OptionPane.messageForeground", Color.WHITE);
+        UIManager.put("Button.background", new Color(60, 63, 65));
+        UIManager.put("Button.foreground", Color.WHITE);
+        UIManager.put("Label.foreground", Color.WHITE);
+        UIManager.put("Slider.background", Color.DARK_GRAY);
+        UIManager.put("Slider.foreground", new Color(255, 160, 122));
+        SwingUtilities.invokeLater(() -> new GhibliAudioEditor());
+    }
+}
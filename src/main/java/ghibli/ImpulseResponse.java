@@ -0,0 +1,110 @@
+package ghibli;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+// An impulse response for ConvolutionProcessor. The PCM is held in memory; the partitioned
+// spectra the processor multiplies against are built per sample rate by getSpectra and cached,
+// so the expensive part can run on a loader thread before the IR reaches a playing chain.
+class ImpulseResponse {
+    public static final int MAX_SECONDS = 10;
+    private static final AtomicLong NEXT_ID = new AtomicLong(1);
+
+    private final long id = NEXT_ID.getAndIncrement();
+    private final File file;
+    private final SampleSource pcm;
+    private final Map<Float, Spectra> spectra = new ConcurrentHashMap<>();
+
+    private ImpulseResponse(File file, SampleSource pcm) {
+        this.file = file;
+        this.pcm = pcm;
+    }
+
+    // Decodes any format AudioSystem reads. IRs longer than MAX_SECONDS are cut off.
+    public static ImpulseResponse load(File file) throws IOException {
+        try (SampleSource source = MappedSampleSource.open(file)) {
+            AudioFormat format = source.getFormat();
+            long frames = Math.min(source.getFrameCount(), (long) (format.getSampleRate() * MAX_SECONDS));
+            if (frames == 0) throw new IOException("Impulse response is empty: " + file);
+            byte[] data = new byte[(int) frames * format.getFrameSize()];
+            source.read(0, data, 0, (int) frames);
+            return new ImpulseResponse(file, new ByteArraySampleSource(data, format));
+        } catch (UnsupportedAudioFileException e) {
+            throw new IOException("Unsupported impulse response format: " + file, e);
+        }
+    }
+
+    // Unique per loaded IR, so reloading a file that changed on disk never matches an old render.
+    public long getId() {
+        return id;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public int getChannels() {
+        return pcm.getChannels();
+    }
+
+    // Partitioned spectra at the given rate, built on first use.
+    public Spectra getSpectra(float sampleRate) {
+        return spectra.computeIfAbsent(sampleRate, this::buildSpectra);
+    }
+
+    private Spectra buildSpectra(float sampleRate) {
+        // Resample to the stream rate with the sinc kernel, then split into partitions.
+        double speed = pcm.getFormat().getSampleRate() / sampleRate;
+        int frames = (int) RenderEngine.getOutputFrameCount(pcm, speed);
+        int channels = pcm.getChannels();
+        float[][] samples = new float[channels][frames];
+        Resampler resampler = new Resampler(pcm);
+        resampler.setQuality(Resampler.Quality.SINC);
+        resampler.setSpeed(speed);
+        resampler.process(samples, frames);
+
+        // Unit energy across all channels keeps long and short IRs at a comparable level.
+        double energy = 0;
+        for (float[] channel : samples) {
+            for (float s : channel) energy += (double) s * s;
+        }
+        float gain = energy > 0 ? (float) (1 / Math.sqrt(energy / channels)) : 0f;
+
+        int partition = ConvolutionProcessor.PARTITION;
+        int partitions = (frames + partition - 1) / partition;
+        Fft fft = new Fft(2 * partition);
+        int bins = fft.getBins();
+        float[][][] re = new float[channels][partitions][bins];
+        float[][][] im = new float[channels][partitions][bins];
+        float[] padded = new float[2 * partition];
+        for (int ch = 0; ch < channels; ch++) {
+            for (int p = 0; p < partitions; p++) {
+                int start = p * partition;
+                int length = Math.min(partition, frames - start);
+                for (int i = 0; i < 2 * partition; i++) {
+                    padded[i] = i < length ? samples[ch][start + i] * gain : 0f;
+                }
+                fft.forward(padded, re[ch][p], im[ch][p]);
+            }
+        }
+        return new Spectra(partitions, re, im);
+    }
+
+    // Spectra of consecutive PARTITION-frame slices of the IR, each zero-padded to 2 * PARTITION.
+    static class Spectra {
+        final int partitions;
+        final float[][][] re;  // [channel][partition][bin]
+        final float[][][] im;
+
+        Spectra(int partitions, float[][][] re, float[][][] im) {
+            this.partitions = partitions;
+            this.re = re;
+            this.im = im;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package ghibli;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import javax.sound.sampled.AudioFormat;
+
+// Preview render that keeps every stage's output for the current window, so a parameter change
+// recomputes only the stage it belongs to and the stages after it: moving the low-pass cutoff
+// leaves resampling, volume, echo and distortion alone. Each stage is keyed by the settings it
+// reads; a disabled stage passes its input through. Every stage is block-size invariant, so
+// running each over the whole window gives the same output as RenderEngine. Owned by one thread
+// (the preview worker); only getTimings may be called from elsewhere.
+class IncrementalRenderer {
+    private static final EffectChain.Stage[] EFFECTS = EffectChain.Stage.values();
+    private static final int STAGES = EFFECTS.length + 1;  // resampling, then the effect chain
+
+    private final int blockSize;
+    private SampleSource source;
+    private int frames = -1;
+    private float[][][] outputs = new float[STAGES][][];  // [stage][channel][frame]
+    private final Object[] keys = new Object[STAGES];     // settings each output was made with
+    private final long[] stageNanos = new long[STAGES];   // last time each stage actually ran
+    private byte[] pcm = new byte[0];
+    private volatile String timings = "";
+
+    public IncrementalRenderer(int blockSize) {
+        this.blockSize = blockSize;
+    }
+
+    // Renders output frames [0, frames) of source under settings to out.
+    public void renderTo(SampleSource source, EffectSettings settings, int frames, OutputStream out,
+                         RenderMonitor monitor) throws IOException {
+        long startNanos = System.nanoTime();
+        long allocated = Telemetry.allocatedBytes();
+        AudioFormat format = source.getFormat();
+        if (source != this.source || frames != this.frames) {
+            this.source = source;
+            this.frames = frames;
+            outputs = new float[STAGES][source.getChannels()][frames];
+            Arrays.fill(keys, null);
+        }
+        StringBuilder summary = new StringBuilder();
+        for (int i = 0; i < STAGES; i++) {
+            Object key = i == 0 ? resampleKey(settings) : effectKey(EFFECTS[i - 1], settings);
+            if (!key.equals(keys[i])) {
+                if (monitor.isCancelled()) throw new CancellationException();
+                // Everything from here on is stale until recomputed, even if this render is cancelled.
+                Arrays.fill(keys, i, STAGES, null);
+                long start = System.nanoTime();
+                if (i == 0) {
+                    resample(settings);
+                } else {
+                    applyEffect(EFFECTS[i - 1], settings, format, outputs[i - 1], outputs[i]);
+                }
+                stageNanos[i] = System.nanoTime() - start;
+                keys[i] = key;
+                summary.append(String.format("%s %.2f ms", stageName(i), stageNanos[i] / 1e6));
+            } else {
+                summary.append(String.format("%s reused (%.2f ms saved)", stageName(i), stageNanos[i] / 1e6));
+            }
+            if (i + 1 < STAGES) summary.append(", ");
+        }
+        timings = summary.toString();
+
+        int length = frames * format.getFrameSize();
+        if (pcm.length < length) pcm = new byte[length];
+        PcmConverter.toPcm16(outputs[STAGES - 1], 0, frames, pcm, 0);
+        out.write(pcm, 0, length);
+        monitor.progress(frames, frames);
+        Telemetry.recordRender(format, frames, System.nanoTime() - startNanos, Telemetry.allocatedBytes() - allocated);
+    }
+
+    // Per-stage cost of the last render: the time of stages that ran, and for reused stages the
+    // time they took when they last ran.
+    public String getTimings() {
+        return timings;
+    }
+
+    private static String stageName(int stage) {
+        return stage == 0 ? "resample" : EFFECTS[stage - 1].toString();
+    }
+
+    private void resample(EffectSettings settings) {
+        RenderEngine engine = new RenderEngine(source, new EffectChain(List.of()), settings, blockSize);
+        float[][] dest = outputs[0];
+        for (int done = 0; done < frames; ) {
+            int n = Math.min(blockSize, frames - done);
+            float[][] block = engine.renderBlock(n);
+            for (int ch = 0; ch < dest.length; ch++) {
+                System.arraycopy(block[ch], 0, dest[ch], done, n);
+            }
+            done += n;
+        }
+    }
+
+    private void applyEffect(EffectChain.Stage stage, EffectSettings settings, AudioFormat format,
+                             float[][] in, float[][] dest) {
+        for (int ch = 0; ch < dest.length; ch++) {
+            System.arraycopy(in[ch], 0, dest[ch], 0, frames);
+        }
+        Processor processor = EffectChain.createStage(stage, settings, format);
+        if (processor != null) processor.process(dest, frames);
+    }
+
+    private static Object resampleKey(EffectSettings s) {
+        return List.of(s.speed, s.resampleQuality, s.preservePitch, s.preservePitch ? s.pitchSemitones : 0.0);
+    }
+
+    // The settings a stage reads, or "off" when they disable it.
+    private static Object effectKey(EffectChain.Stage stage, EffectSettings s) {
+        switch (stage) {
+            case VOLUME:
+                return s.volume;
+            case ECHO:
+                return s.echoEnabled ? List.of(s.echoDelayMs, s.echoDecay) : "off";
+            case DISTORTION:
+                return s.distortionEnabled ? s.distortionLevel : "off";
+            case LOW_PASS:
+                return s.lowPassEnabled ? s.lowPassCutoff : "off";
+            case REVERB:
+                return s.reverbEnabled && s.reverbIr != null ? List.of(s.reverbMix, s.reverbIr) : "off";
+            default:
+                throw new IllegalArgumentException("Unknown stage: " + stage);
+        }
+    }
+}
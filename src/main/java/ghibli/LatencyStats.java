@@ -0,0 +1,38 @@
+package ghibli;
+
+// Running summary of a latency measurement: last, mean and max.
+class LatencyStats {
+    private long count;
+    private long totalNanos;
+    private long maxNanos;
+    private long lastNanos;
+
+    public synchronized void record(long nanos) {
+        count++;
+        totalNanos += nanos;
+        maxNanos = Math.max(maxNanos, nanos);
+        lastNanos = nanos;
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    public synchronized double getMeanMillis() {
+        return count == 0 ? 0 : totalNanos / 1e6 / count;
+    }
+
+    public synchronized double getMaxMillis() {
+        return maxNanos / 1e6;
+    }
+
+    public synchronized double getLastMillis() {
+        return lastNanos / 1e6;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("last %.1f ms, mean %.1f ms, max %.1f ms (%d samples)",
+                getLastMillis(), getMeanMillis(), getMaxMillis(), count);
+    }
+}
@@ -0,0 +1,225 @@
+package ghibli;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import javax.sound.sampled.AudioFormat;
+
+// EBU R128 loudness of a whole stream, measured in parallel chunks. Each chunk gets its own
+// LoudnessMeter, warmed up on the audio just before it, and the meters' 100 ms step energies are
+// added into one series for gating, so the result matches a single serial pass to within the
+// filters' settling error. Only step energies are kept (ten doubles per second of audio), never
+// the audio itself.
+class LoudnessAnalyzer {
+    public static final int CHUNK_FRAMES = 1 << 18;
+    private static final int WARM_UP_FRAMES = 1 << 13;  // K-weighting settles to < -100 dB well within this
+    private static final int READ_FRAMES = 1 << 13;
+    private static final int MOMENTARY_STEPS = 4;       // 400 ms gating blocks, 75% overlap
+    private static final int SHORT_TERM_STEPS = 30;     // 3 s short-term window
+    private static final double ABSOLUTE_GATE = -70;
+    private static final double RELATIVE_GATE = -10;
+
+    // Measurements of one stream. Levels are in LUFS and dBTP / dBFS; -Infinity for silence or
+    // audio too short to measure.
+    static class Result {
+        public final double integrated;
+        public final double shortTermMax;
+        public final double truePeak;
+        public final double samplePeak;
+        public final long clippedSamples;
+
+        Result(double integrated, double shortTermMax, double truePeak, double samplePeak, long clippedSamples) {
+            this.integrated = integrated;
+            this.shortTermMax = shortTermMax;
+            this.truePeak = truePeak;
+            this.samplePeak = samplePeak;
+            this.clippedSamples = clippedSamples;
+        }
+
+        // Gain in dB that brings the integrated loudness to target, lowered if needed so the true
+        // peak stays at or under ceiling. 0 for audio that could not be measured.
+        public double gainTo(double target, double ceiling) {
+            if (Double.isInfinite(integrated) || Double.isInfinite(truePeak)) return 0;
+            return Math.min(target - integrated, ceiling - truePeak);
+        }
+
+        @Override
+        public String toString() {
+            String s = String.format("%.1f LUFS integrated, %.1f LUFS short-term max, %.1f dBTP true peak",
+                    integrated, shortTermMax, truePeak);
+            return clippedSamples > 0 ? s + String.format(", %d clipped samples", clippedSamples) : s;
+        }
+    }
+
+    private LoudnessAnalyzer() {
+    }
+
+    // Measures a source as it is, one chunk per pool task.
+    public static Result analyze(SampleSource source, ForkJoinPool pool, RenderMonitor monitor) {
+        long frames = source.getFrameCount();
+        List<ForkJoinTask<LoudnessMeter>> tasks = new ArrayList<>();
+        for (long start = 0; start < frames; start += CHUNK_FRAMES) {
+            long chunkStart = start;
+            long chunkEnd = Math.min(frames, start + CHUNK_FRAMES);
+            tasks.add(pool.submit(() -> measureChunk(source, chunkStart, chunkEnd, monitor)));
+        }
+        List<LoudnessMeter> meters = new ArrayList<>();
+        try {
+            for (ForkJoinTask<LoudnessMeter> task : tasks) {
+                LoudnessMeter meter = task.join();
+                meters.add(meter);
+                monitor.progress(meter.getEndFrame(), frames);
+            }
+        } finally {
+            for (ForkJoinTask<LoudnessMeter> task : tasks) {
+                task.cancel(false);
+            }
+        }
+        return summarize(meters, source.getFormat(), frames);
+    }
+
+    private static LoudnessMeter measureChunk(SampleSource source, long start, long end, RenderMonitor monitor) {
+        AudioFormat format = source.getFormat();
+        LoudnessMeter meter = new LoudnessMeter(format.getChannels(), format.getSampleRate(), start);
+        byte[] pcm = new byte[READ_FRAMES * format.getFrameSize()];
+        float[][] block = new float[format.getChannels()][READ_FRAMES];
+        for (long frame = Math.max(0, start - WARM_UP_FRAMES); frame < end; ) {
+            if (monitor.isCancelled()) throw new CancellationException();
+            int n = source.read(frame, pcm, 0, (int) Math.min(READ_FRAMES, (frame < start ? start : end) - frame));
+            if (n == 0) break;
+            PcmConverter.toFloat(pcm, 0, block, 0, n);
+            if (frame < start) {
+                meter.warmUp(block, 0, n);
+            } else {
+                meter.process(block, 0, n);
+            }
+            frame += n;
+        }
+        return meter;
+    }
+
+    // Measures what rendering source under settings would produce, before PCM conversion, so
+    // overs that the conversion would clip show up in the true peak. The render streams through
+    // the meters and is discarded. Chunks render as in ParallelRenderer and are metered on the
+    // pool; time-stretched renders run serially on the calling thread.
+    public static Result analyzeRender(SampleSource source, EffectSettings settings, int blockSize,
+                                       ForkJoinPool pool, RenderMonitor monitor) throws IOException {
+        AudioFormat format = source.getFormat();
+        long frames = RenderEngine.getOutputFrameCount(source, settings.speed);
+        List<LoudnessMeter> meters = new ArrayList<>();
+        if (settings.preservePitch) {
+            LoudnessMeter meter = new LoudnessMeter(format.getChannels(), format.getSampleRate(), 0);
+            RenderEngine engine = new RenderEngine(source, settings, blockSize);
+            for (long done = 0; done < frames; ) {
+                if (monitor.isCancelled()) throw new CancellationException();
+                int n = (int) Math.min(blockSize, frames - done);
+                meter.process(engine.renderBlock(n), 0, n);
+                done += n;
+                monitor.progress(done, frames);
+            }
+            meters.add(meter);
+            return summarize(meters, format, frames);
+        }
+        int maxPending = pool.getParallelism() * 2;
+        ArrayDeque<ForkJoinTask<LoudnessMeter>> pending = new ArrayDeque<>();
+        float[][][] previous = new float[1][][];
+        ParallelRenderer renderer = new ParallelRenderer(source, settings, ParallelRenderer.DEFAULT_CHUNK_FRAMES, pool);
+        try {
+            renderer.render((chunk, start, length) -> {
+                float[][] before = previous[0];
+                pending.add(pool.submit(() -> {
+                    LoudnessMeter meter = new LoudnessMeter(format.getChannels(), format.getSampleRate(), start);
+                    if (before != null) {
+                        int beforeLength = before[0].length;
+                        meter.warmUp(before, Math.max(0, beforeLength - WARM_UP_FRAMES), beforeLength);
+                    }
+                    meter.process(chunk, 0, length);
+                    return meter;
+                }));
+                previous[0] = chunk;
+                while (pending.size() > maxPending) {
+                    meters.add(pending.poll().join());
+                }
+            }, frames, monitor);
+            while (!pending.isEmpty()) {
+                meters.add(pending.poll().join());
+            }
+        } finally {
+            for (ForkJoinTask<LoudnessMeter> task : pending) {
+                task.cancel(false);
+            }
+        }
+        return summarize(meters, format, frames);
+    }
+
+    // Gates the merged step series per BS.1770-4: 400 ms blocks on a 100 ms hop, an absolute gate
+    // at -70 LUFS, then a relative gate 10 LU under the loudness of the blocks that passed it.
+    private static Result summarize(List<LoudnessMeter> meters, AudioFormat format, long frames) {
+        int stepFrames = (int) Math.round(format.getSampleRate() * LoudnessMeter.STEP_SECONDS);
+        double[] steps = new double[(int) (frames / stepFrames)];  // complete steps only
+        double truePeak = 0;
+        double samplePeak = 0;
+        long clipped = 0;
+        for (LoudnessMeter meter : meters) {
+            meter.addStepsTo(steps);
+            truePeak = Math.max(truePeak, meter.getTruePeak());
+            samplePeak = Math.max(samplePeak, meter.getSamplePeak());
+            clipped += meter.getClippedSamples();
+        }
+        double[] blocks = windowEnergies(steps, MOMENTARY_STEPS, stepFrames);
+        double gatedSum = 0;
+        int gatedCount = 0;
+        for (double z : blocks) {
+            if (toLufs(z) > ABSOLUTE_GATE) {
+                gatedSum += z;
+                gatedCount++;
+            }
+        }
+        double integrated = Double.NEGATIVE_INFINITY;
+        if (gatedCount > 0) {
+            double relativeGate = toLufs(gatedSum / gatedCount) + RELATIVE_GATE;
+            double sum = 0;
+            int count = 0;
+            for (double z : blocks) {
+                double lufs = toLufs(z);
+                if (lufs > ABSOLUTE_GATE && lufs > relativeGate) {
+                    sum += z;
+                    count++;
+                }
+            }
+            integrated = toLufs(sum / count);
+        }
+        // Audio shorter than the window is measured as one short window.
+        double[] shortTerm = windowEnergies(steps, Math.min(SHORT_TERM_STEPS, steps.length), stepFrames);
+        double shortTermMax = Double.NEGATIVE_INFINITY;
+        for (double z : shortTerm) {
+            shortTermMax = Math.max(shortTermMax, toLufs(z));
+        }
+        return new Result(integrated, shortTermMax, toDecibels(truePeak), toDecibels(samplePeak), clipped);
+    }
+
+    // Mean-square energy of every window of width steps, hopping one step.
+    private static double[] windowEnergies(double[] steps, int width, int stepFrames) {
+        if (width <= 0 || steps.length < width) return new double[0];
+        double[] windows = new double[steps.length - width + 1];
+        double sum = 0;
+        for (int i = 0; i < steps.length; i++) {
+            sum += steps[i];
+            if (i >= width) sum -= steps[i - width];
+            if (i >= width - 1) windows[i - width + 1] = Math.max(0, sum) / ((double) width * stepFrames);
+        }
+        return windows;
+    }
+
+    private static double toLufs(double meanSquare) {
+        return -0.691 + 10 * Math.log10(meanSquare);
+    }
+
+    private static double toDecibels(double level) {
+        return 20 * Math.log10(level);
+    }
+}
@@ -0,0 +1,248 @@
+package ghibli;
+
+import java.util.Arrays;
+
+// ITU-R BS.1770 / EBU R128 measurement of one stretch of a stream. Samples are K-weighted (a
+// high-shelf and a high-pass biquad per channel) and their channel-weighted energy is summed into
+// 100 ms steps on the absolute timeline, so meters run over separate chunks can be merged into one
+// exact step series; gating works on those steps. True peak is the largest absolute sample of a
+// 4x oversampled signal (48-tap polyphase windowed-sinc interpolator). A meter that starts mid
+// stream should first warmUp() on audio just before its start so its filters carry the right
+// state.
+class LoudnessMeter {
+    public static final double STEP_SECONDS = 0.1;
+    private static final int OVERSAMPLE = 4;
+    private static final int TAPS_PER_PHASE = 12;
+    private static final float[][] PHASES = interpolator();
+    private static final double GAIN_BOUND = maxAbsoluteSum(PHASES); // no phase output exceeds this x input peak
+
+    private final int channels;
+    private final int stepFrames;
+    private final double[] channelWeights;
+    private final double[][] coefficients = new double[2][5];  // {b0, b1, b2, a1, a2} per biquad
+    private final double[][] state;      // [channel][4 per biquad]: x1, x2, y1, y2
+    private final float[][] history;     // [channel][2 * TAPS_PER_PHASE] ring of recent input, stored twice
+    private int historyPos;              // newest sample is at history[ch][historyPos]
+    private final int[] hot;             // [channel] samples until the last one that could raise the true peak leaves the taps
+    private final long firstFrame;
+    private long frame;                  // absolute frame of the next measured sample
+    private double[] steps;              // energy per step, starting at step firstFrame / stepFrames
+    private double truePeak;
+    private double samplePeak;
+    private long clippedSamples;         // samples past full scale, which PCM16 output saturates
+
+    public LoudnessMeter(int channels, float sampleRate, long firstFrame) {
+        this.channels = channels;
+        this.stepFrames = (int) Math.round(sampleRate * STEP_SECONDS);
+        this.channelWeights = channelWeights(channels);
+        this.firstFrame = firstFrame;
+        this.frame = firstFrame;
+        this.state = new double[channels][8];
+        this.history = new float[channels][2 * TAPS_PER_PHASE];
+        this.hot = new int[channels];
+        this.steps = new double[16];
+        highShelf(sampleRate, coefficients[0]);
+        highPass(sampleRate, coefficients[1]);
+    }
+
+    // BS.1770 weights: 1.0 for front channels, 1.41 for the surrounds of 5.1, which also drops the LFE.
+    private static double[] channelWeights(int channels) {
+        double[] weights = new double[channels];
+        Arrays.fill(weights, 1.0);
+        if (channels == 6) {
+            weights[3] = 0;
+            weights[4] = 1.41;
+            weights[5] = 1.41;
+        }
+        return weights;
+    }
+
+    private static void highShelf(double sampleRate, double[] c) {
+        double f0 = 1681.974450955533;
+        double gainDb = 3.999843853973347;
+        double q = 0.7071752369554196;
+        double k = Math.tan(Math.PI * f0 / sampleRate);
+        double vh = Math.pow(10, gainDb / 20);
+        double vb = Math.pow(vh, 0.4996667741545416);
+        double a0 = 1 + k / q + k * k;
+        c[0] = (vh + vb * k / q + k * k) / a0;
+        c[1] = 2 * (k * k - vh) / a0;
+        c[2] = (vh - vb * k / q + k * k) / a0;
+        c[3] = 2 * (k * k - 1) / a0;
+        c[4] = (1 - k / q + k * k) / a0;
+    }
+
+    private static void highPass(double sampleRate, double[] c) {
+        double f0 = 38.13547087602444;
+        double q = 0.5003270373238773;
+        double k = Math.tan(Math.PI * f0 / sampleRate);
+        double a0 = 1 + k / q + k * k;
+        c[0] = 1;
+        c[1] = -2;
+        c[2] = 1;
+        c[3] = 2 * (k * k - 1) / a0;
+        c[4] = (1 - k / q + k * k) / a0;
+    }
+
+    // Hann-windowed sinc low-passed at the input Nyquist rate, split into OVERSAMPLE phases.
+    private static float[][] interpolator() {
+        int length = OVERSAMPLE * TAPS_PER_PHASE;
+        double center = (length - 1) / 2.0;
+        float[][] phases = new float[OVERSAMPLE][TAPS_PER_PHASE];
+        for (int n = 0; n < length; n++) {
+            double x = (n - center) / OVERSAMPLE;
+            double sinc = x == 0 ? 1 : Math.sin(Math.PI * x) / (Math.PI * x);
+            double window = 0.5 - 0.5 * Math.cos(2 * Math.PI * (n + 0.5) / length);
+            phases[n % OVERSAMPLE][n / OVERSAMPLE] = (float) (sinc * window);
+        }
+        return phases;
+    }
+
+    private static double maxAbsoluteSum(float[][] phases) {
+        double max = 0;
+        for (float[] phase : phases) {
+            double sum = 0;
+            for (float tap : phase) {
+                sum += Math.abs(tap);
+            }
+            max = Math.max(max, sum);
+        }
+        return max;
+    }
+
+    // Runs frames [from, to) of a planar block through the filters without measuring them.
+    public void warmUp(float[][] block, int from, int to) {
+        run(block, from, to, false);
+    }
+
+    // Measures frames [from, to) of a planar block, which follow the frames measured so far.
+    public void process(float[][] block, int from, int to) {
+        if (to <= from) return;
+        ensureSteps((int) ((frame + to - from - 1) / stepFrames - firstFrame / stepFrames) + 1);
+        run(block, from, to, true);
+        frame += to - from;
+    }
+
+    // One pass per channel with the filter state in locals; the history ring is written at pos
+    // and pos + TAPS_PER_PHASE, so the newest TAPS_PER_PHASE samples are always contiguous.
+    // Interpolation is skipped while every sample under the taps is too small to beat the peak so
+    // far even at the filter's largest gain, which leaves the result exact.
+    private void run(float[][] block, int from, int to, boolean measure) {
+        int baseStep = (int) (firstFrame / stepFrames);
+        double peak = truePeak;
+        double sampleMax = samplePeak;
+        long clipped = 0;
+        int startPos = historyPos;
+        int pos = startPos;
+        double[] c1 = coefficients[0];
+        double[] c2 = coefficients[1];
+        for (int ch = 0; ch < channels; ch++) {
+            double weight = channelWeights[ch];
+            float[] samples = block[ch];
+            float[] h = history[ch];
+            double[] s = state[ch];
+            double x1 = s[0], x2 = s[1], y1 = s[2], y2 = s[3];
+            double u1 = s[4], u2 = s[5], z1 = s[6], z2 = s[7];
+            int step = (int) (frame / stepFrames) - baseStep;
+            int untilNextStep = (int) (stepFrames - frame % stepFrames);
+            double energy = 0;
+            int hotLeft = hot[ch];
+            pos = startPos;
+            for (int i = from; i < to; i++) {
+                float x = samples[i];
+                double y = c1[0] * x + c1[1] * x1 + c1[2] * x2 - c1[3] * y1 - c1[4] * y2;
+                x2 = x1;
+                x1 = x;
+                y2 = y1;
+                y1 = y;
+                double z = c2[0] * y + c2[1] * u1 + c2[2] * u2 - c2[3] * z1 - c2[4] * z2;
+                u2 = u1;
+                u1 = y;
+                z2 = z1;
+                z1 = z;
+                pos = pos == 0 ? TAPS_PER_PHASE - 1 : pos - 1;
+                h[pos] = x;
+                h[pos + TAPS_PER_PHASE] = x;
+                double abs = Math.abs(x);
+                if (abs * GAIN_BOUND > peak) hotLeft = TAPS_PER_PHASE;
+                if (!measure) {
+                    if (hotLeft > 0) hotLeft--;
+                    continue;
+                }
+                energy += z * z;
+                if (abs > sampleMax) sampleMax = abs;
+                if (abs > 1.0) clipped++;
+                if (hotLeft > 0) {
+                    hotLeft--;
+                    peak = Math.max(peak, interpolatedPeak(h, pos));
+                }
+                if (--untilNextStep == 0) {
+                    steps[step++] += weight * energy;
+                    energy = 0;
+                    untilNextStep = stepFrames;
+                }
+            }
+            if (energy != 0) steps[step] += weight * energy;
+            hot[ch] = hotLeft;
+            s[0] = x1; s[1] = x2; s[2] = y1; s[3] = y2;
+            s[4] = u1; s[5] = u2; s[6] = z1; s[7] = z2;
+        }
+        historyPos = pos;
+        truePeak = peak;
+        samplePeak = sampleMax;
+        clippedSamples += clipped;
+    }
+
+    // Largest absolute value of the OVERSAMPLE points interpolated behind the newest sample,
+    // h[pos], with older samples following it.
+    private static double interpolatedPeak(float[] h, int pos) {
+        float peak = 0;
+        for (float[] phase : PHASES) {
+            float sum = 0;
+            for (int t = 0; t < TAPS_PER_PHASE; t++) {
+                sum += phase[t] * h[pos + t];
+            }
+            peak = Math.max(peak, Math.abs(sum));
+        }
+        return peak;
+    }
+
+    private void ensureSteps(int count) {
+        if (count > steps.length) {
+            steps = Arrays.copyOf(steps, Math.max(count, steps.length * 2));
+        }
+    }
+
+    public int getStepFrames() {
+        return stepFrames;
+    }
+
+    public long getFirstFrame() {
+        return firstFrame;
+    }
+
+    public long getEndFrame() {
+        return frame;
+    }
+
+    // Adds this meter's step energies into a timeline-wide series indexed from step 0.
+    public void addStepsTo(double[] timeline) {
+        int first = (int) (firstFrame / stepFrames);
+        int count = frame == firstFrame ? 0 : (int) ((frame - 1) / stepFrames) - first + 1;
+        for (int i = 0; i < count && first + i < timeline.length; i++) {
+            timeline[first + i] += steps[i];
+        }
+    }
+
+    public double getTruePeak() {
+        return Math.max(truePeak, samplePeak);
+    }
+
+    public double getSamplePeak() {
+        return samplePeak;
+    }
+
+    public long getClippedSamples() {
+        return clippedSamples;
+    }
+}
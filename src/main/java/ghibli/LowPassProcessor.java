@@ -0,0 +1,71 @@
+package ghibli;
+
+import java.util.Arrays;
+
+// One-pole RC low-pass filter. An alpha of 1.0 passes the input through unchanged.
+class LowPassProcessor implements Processor {
+    private final float sampleRate;
+    private final float[] previous;
+    private float alpha;
+    private float targetAlpha;
+
+    public LowPassProcessor(int channels, float sampleRate, EffectSettings settings) {
+        this.sampleRate = sampleRate;
+        this.previous = new float[channels];
+        this.alpha = alphaFor(settings);
+        this.targetAlpha = alpha;
+    }
+
+    private float alphaFor(EffectSettings settings) {
+        if (!settings.lowPassEnabled) return 1f;
+        double dt = 1.0 / sampleRate;
+        double rc = 1.0 / (2 * Math.PI * settings.lowPassCutoff);
+        return (float) (dt / (rc + dt));
+    }
+
+    @Override
+    public void update(EffectSettings settings) {
+        targetAlpha = alphaFor(settings);
+    }
+
+    @Override
+    public void process(float[][] block, int frames) {
+        float a = alpha;
+        if (a == targetAlpha) {
+            float b = 1f - a;
+            for (int ch = 0; ch < block.length; ch++) {
+                float[] samples = block[ch];
+                float y = previous[ch];
+                for (int i = 0; i < frames; i++) {
+                    y = a * samples[i] + b * y;
+                    samples[i] = y;
+                }
+                previous[ch] = y;
+            }
+            return;
+        }
+        float step = (targetAlpha - a) / frames;
+        for (int ch = 0; ch < block.length; ch++) {
+            float[] samples = block[ch];
+            float y = previous[ch];
+            for (int i = 0; i < frames; i++) {
+                float ai = a + step * (i + 1);
+                y = ai * samples[i] + (1f - ai) * y;
+                samples[i] = y;
+            }
+            previous[ch] = y;
+        }
+        alpha = targetAlpha;
+    }
+
+    @Override
+    public void reset() {
+        Arrays.fill(previous, 0f);
+        alpha = targetAlpha;
+    }
+
+    @Override
+    public boolean isStateless() {
+        return false;
+    }
+}
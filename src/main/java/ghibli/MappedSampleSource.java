@@ -0,0 +1,166 @@
+package ghibli;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import javax.sound.sampled.*;
+
+// Sample source backed by a memory-mapped file. 16-bit PCM WAV input is mapped in place;
+// anything else is decoded once into a temp PCM file by DecodedSampleSource.
+class MappedSampleSource implements SampleSource {
+    // Files are mapped in 1 GB segments since a single MappedByteBuffer is capped at 2 GB.
+    private static final int SEGMENT_SHIFT = 30;
+    private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+
+    private final AudioFormat format;
+    private final int frameSize;
+    private final long frameCount;
+    private final MappedByteBuffer[] segments;
+
+    private MappedSampleSource(File file, long dataOffset, long dataLength, AudioFormat format) throws IOException {
+        this.format = format;
+        this.frameSize = format.getFrameSize();
+        this.frameCount = dataLength / frameSize;
+        long length = frameCount * frameSize;
+        int segmentCount = (int) ((length + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+        segments = new MappedByteBuffer[segmentCount];
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            for (int i = 0; i < segmentCount; i++) {
+                long start = (long) i << SEGMENT_SHIFT;
+                long size = Math.min(1L << SEGMENT_SHIFT, length - start);
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, dataOffset + start, size);
+                segments[i].order(ByteOrder.LITTLE_ENDIAN);
+            }
+        }
+    }
+
+    public static SampleSource open(File file) throws IOException, UnsupportedAudioFileException {
+        SampleSource mapped = openMapped(file);
+        return mapped != null ? mapped : DecodedSampleSource.decode(file);
+    }
+
+    // Maps 16-bit PCM WAV or RF64 in place; returns null for anything that needs decoding.
+    public static MappedSampleSource openMapped(File file) throws IOException, UnsupportedAudioFileException {
+        MappedSampleSource rf64 = openRf64(file);
+        if (rf64 != null) return rf64;
+        AudioFileFormat fileFormat = AudioSystem.getAudioFileFormat(file);
+        AudioFormat baseFormat = fileFormat.getFormat();
+        if (fileFormat.getType() == AudioFileFormat.Type.WAVE && isPcm16(baseFormat)) {
+            long[] chunk = findDataChunk(file);
+            if (chunk != null) {
+                return new MappedSampleSource(file, chunk[0], chunk[1], baseFormat);
+            }
+        }
+        return null;
+    }
+
+    private static boolean isPcm16(AudioFormat format) {
+        return format.getEncoding() == AudioFormat.Encoding.PCM_SIGNED
+                && format.getSampleSizeInBits() == 16
+                && !format.isBigEndian();
+    }
+
+    // Walks the RIFF chunk list and returns {offset, length} of the "data" chunk.
+    private static long[] findDataChunk(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+            if (channel.read(header, 0) < 12) return null;
+            if (header.getInt(0) != 0x46464952 || header.getInt(8) != 0x45564157) return null; // "RIFF", "WAVE"
+            long fileLength = channel.size();
+            long pos = 12;
+            ByteBuffer chunkHeader = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+            while (pos + 8 <= fileLength) {
+                chunkHeader.clear();
+                if (channel.read(chunkHeader, pos) < 8) return null;
+                int id = chunkHeader.getInt(0);
+                long size = chunkHeader.getInt(4) & 0xffffffffL;
+                if (id == 0x61746164) { // "data"
+                    // Streamed writers often leave the size unset, so trust the file length instead.
+                    long available = fileLength - (pos + 8);
+                    return new long[] {pos + 8, Math.min(size, available)};
+                }
+                pos += 8 + size + (size & 1);
+            }
+            return null;
+        }
+    }
+
+    // AudioSystem doesn't recognise RF64 (WAV with 64-bit sizes, as WavWriter emits past 4 GB), so
+    // its header is read here: the data size comes from the ds64 chunk. Returns null for non-RF64.
+    private static MappedSampleSource openRf64(File file) throws IOException, UnsupportedAudioFileException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+            if (channel.read(header, 0) < 12) return null;
+            if (header.getInt(0) != 0x34364652 || header.getInt(8) != 0x45564157) return null; // "RF64", "WAVE"
+            long fileLength = channel.size();
+            long pos = 12;
+            long dataSize = -1;
+            AudioFormat format = null;
+            ByteBuffer chunk = ByteBuffer.allocate(24).order(ByteOrder.LITTLE_ENDIAN);
+            while (pos + 8 <= fileLength) {
+                chunk.clear();
+                if (channel.read(chunk, pos) < 8) break;
+                int id = chunk.getInt(0);
+                long size = chunk.getInt(4) & 0xffffffffL;
+                if (id == 0x34367364) { // "ds64"
+                    dataSize = chunk.getLong(16);
+                } else if (id == 0x20746d66) { // "fmt "
+                    int tag = chunk.getShort(8) & 0xffff;
+                    int channels = chunk.getShort(10);
+                    int sampleRate = chunk.getInt(12);
+                    int bits = chunk.getShort(22);
+                    if (tag != 1 || bits != 16) {
+                        throw new UnsupportedAudioFileException("Only 16-bit PCM RF64 is supported: " + file);
+                    }
+                    format = new AudioFormat(sampleRate, 16, channels, true, false);
+                } else if (id == 0x61746164) { // "data"
+                    if (format == null) break;
+                    if (size == 0xffffffffL && dataSize >= 0) size = dataSize;
+                    long available = fileLength - (pos + 8);
+                    return new MappedSampleSource(file, pos + 8, Math.min(size, available), format);
+                }
+                pos += 8 + size + (size & 1);
+            }
+            throw new UnsupportedAudioFileException("Malformed RF64 file: " + file);
+        }
+    }
+
+    @Override
+    public AudioFormat getFormat() {
+        return format;
+    }
+
+    @Override
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    @Override
+    public int getSample(long frame, int channel) {
+        // Samples are 2-byte aligned and segments are a power of two, so a sample never straddles two.
+        long pos = frame * frameSize + channel * 2L;
+        return segments[(int) (pos >>> SEGMENT_SHIFT)].getShort((int) (pos & SEGMENT_MASK));
+    }
+
+    @Override
+    public int read(long startFrame, byte[] dest, int offset, int frameCount) {
+        long available = this.frameCount - startFrame;
+        if (available <= 0) return 0;
+        int frames = (int) Math.min(frameCount, available);
+        long pos = startFrame * frameSize;
+        int remaining = frames * frameSize;
+        while (remaining > 0) {
+            MappedByteBuffer segment = segments[(int) (pos >>> SEGMENT_SHIFT)];
+            int segmentPos = (int) (pos & SEGMENT_MASK);
+            int len = Math.min(remaining, segment.capacity() - segmentPos);
+            segment.get(segmentPos, dest, offset, len);
+            pos += len;
+            offset += len;
+            remaining -= len;
+        }
+        return frames;
+    }
+}
@@ -0,0 +1,166 @@
+package ghibli;
+
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import javax.sound.sampled.*;
+
+// Live playback of a Mixer. A mix thread renders each block with the tracks spread across the
+// mixer's pool and hands the PCM to the output thread through a BlockRing; the output thread only
+// copies blocks into the line, so a slow block delays the ring rather than the device. Track
+// settings are read once per block, as in PlaybackEngine. Both threads park briefly when the ring
+// is full or empty and wake each other after every block.
+class MixPlayback {
+    public static final int RING_BLOCKS = 4;
+    private static final long PARK_NANOS = 1_000_000L;
+
+    private final Mixer mixer;
+    private final int targetLatencyMs;
+    private volatile boolean running;
+    private volatile long position;   // output frame currently being heard
+    private volatile RuntimeException mixFailure;  // set by the mix thread before it stops playback
+    private Thread mixThread;
+    private Thread outputThread;
+
+    public MixPlayback(Mixer mixer, int targetLatencyMs) {
+        this.mixer = mixer;
+        this.targetLatencyMs = targetLatencyMs;
+    }
+
+    public Mixer getMixer() {
+        return mixer;
+    }
+
+    public long getPosition() {
+        return position;
+    }
+
+    public void setPosition(long frame) {
+        position = frame;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Starts from the current position. onFinished runs on the output thread once every track
+    // has ended (not when stopped); onFailed runs there instead if no output line can be opened
+    // or either thread's work throws. Either way playback is no longer running.
+    public synchronized void start(Runnable onFinished, Consumer<Exception> onFailed) {
+        if (running) return;
+        running = true;
+        mixFailure = null;
+        mixer.seek(position);
+        BlockRing ring = new BlockRing(RING_BLOCKS, mixer.getBlockSize() * mixer.getFormat().getFrameSize());
+        outputThread = new Thread(() -> output(ring, onFinished, onFailed), "mix-output");
+        mixThread = new Thread(() -> mix(ring), "mix");
+        outputThread.setPriority(Thread.MAX_PRIORITY);
+        mixThread.setPriority(Thread.MAX_PRIORITY);
+        outputThread.start();
+        mixThread.start();
+    }
+
+    // Pauses; the next start() resumes from the last heard frame.
+    public synchronized void stop() {
+        running = false;
+        try {
+            for (Thread thread : new Thread[] {mixThread, outputThread}) {
+                if (thread != null) {
+                    LockSupport.unpark(thread);
+                    thread.join();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        mixThread = null;
+        outputThread = null;
+    }
+
+    private void mix(BlockRing ring) {
+        AudioFormat format = mixer.getFormat();
+        int blockSize = mixer.getBlockSize();
+        float[][] block = new float[format.getChannels()][blockSize];
+        try {
+            while (running) {
+                byte[] slot = ring.claim();
+                if (slot == null) {
+                    LockSupport.parkNanos(this, PARK_NANOS);
+                    continue;
+                }
+                long start = System.nanoTime();
+                long allocated = Telemetry.allocatedBytes();
+                int frames = mixer.mixBlock(block, blockSize);
+                PcmConverter.toPcm16(block, 0, frames, slot, 0);
+                if (Telemetry.ENABLED) {
+                    Telemetry.PLAYBACK.recordBlock(frames / format.getSampleRate(), System.nanoTime() - start,
+                            Telemetry.allocatedBytes() - allocated);
+                }
+                ring.publish(frames * format.getFrameSize());
+                LockSupport.unpark(outputThread);
+                if (frames == 0) break;
+            }
+        } catch (RuntimeException e) {
+            // The output thread would wait for blocks forever; stop it and let it report this.
+            mixFailure = e;
+            running = false;
+            LockSupport.unpark(outputThread);
+        }
+    }
+
+    private void output(BlockRing ring, Runnable onFinished, Consumer<Exception> onFailed) {
+        AudioFormat format = mixer.getFormat();
+        int frameSize = format.getFrameSize();
+        long written = position;
+        boolean finished = false;
+        Exception failure = null;
+        SourceDataLine line = null;
+        try {
+            line = (SourceDataLine) AudioSystem.getLine(new DataLine.Info(SourceDataLine.class, format));
+            int latencyFrames = (int) (format.getSampleRate() * targetLatencyMs / 1000);
+            line.open(format, Math.max(latencyFrames, 2 * mixer.getBlockSize()) * frameSize);
+            line.start();
+            boolean firstWrite = true;
+            if (Telemetry.ENABLED) Telemetry.PLAYBACK.started();
+            while (running) {
+                byte[] slot = ring.peek();
+                if (slot == null) {
+                    LockSupport.parkNanos(this, PARK_NANOS / 4);
+                    continue;
+                }
+                int length = ring.peekLength();
+                if (length == 0) {
+                    finished = true;
+                    break;
+                }
+                if (Telemetry.ENABLED) {
+                    Telemetry.PLAYBACK.recordBuffer(line.getBufferSize() - line.available(), line.getBufferSize(), firstWrite);
+                }
+                firstWrite = false;
+                line.write(slot, 0, length);
+                ring.release();
+                LockSupport.unpark(mixThread);
+                written += length / frameSize;
+                int bufferedFrames = (line.getBufferSize() - line.available()) / frameSize;
+                position = Math.max(0, written - bufferedFrames);
+            }
+            if (finished) {
+                line.drain();
+            } else {
+                line.stop();
+                line.flush();
+            }
+        } catch (LineUnavailableException | RuntimeException e) {
+            failure = e;
+        } finally {
+            if (line != null) line.close();
+        }
+        running = false;
+        if (failure == null) failure = mixFailure;
+        if (failure != null) {
+            onFailed.accept(failure);
+        } else if (finished) {
+            position = 0;
+            onFinished.run();
+        }
+    }
+}
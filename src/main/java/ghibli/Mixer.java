@@ -0,0 +1,185 @@
+package ghibli;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.sound.sampled.AudioFormat;
+
+// Sums several tracks, each through its own resampler and effect chain. Within every block the
+// tracks render in parallel on the pool, each into its own engine's block, and are then summed in
+// track order on the calling thread, so the mix is the same however the work was spread. All
+// tracks must share one sample rate; the mix has as many channels as the widest track, and
+// narrower tracks repeat their last channel (mono feeds both sides).
+class Mixer {
+    private final Track[] tracks;
+    private final RenderEngine[] engines;
+    private final EffectSettings[] applied;  // settings each engine currently runs with
+    private final float[][][] blocks;        // each track's output for the current block
+    private final int[] rendered;            // frames each track produced for the current block
+    private final AudioFormat format;
+    private final int blockSize;
+    private final ForkJoinPool pool;
+    private final boolean live;
+    private final AtomicReference<ConvolutionProcessor.DelayLine> reverbDelayLine;  // live only, see EffectChain.forPlayback
+
+    // live builds every track's chain with all stages present, so effects can be toggled while
+    // the mix plays; offline mixes only instantiate enabled effects.
+    public Mixer(List<Track> tracks, int blockSize, ForkJoinPool pool, boolean live,
+                 AtomicReference<ConvolutionProcessor.DelayLine> reverbDelayLine) {
+        if (tracks.isEmpty()) throw new IllegalArgumentException("A mix needs at least one track");
+        this.tracks = tracks.toArray(new Track[0]);
+        this.blockSize = blockSize;
+        this.pool = pool;
+        this.live = live;
+        this.reverbDelayLine = reverbDelayLine;
+        float sampleRate = this.tracks[0].getSource().getFormat().getSampleRate();
+        int channels = 0;
+        for (Track track : this.tracks) {
+            AudioFormat trackFormat = track.getSource().getFormat();
+            if (trackFormat.getSampleRate() != sampleRate) {
+                throw new IllegalArgumentException(String.format("Track %s is %.0f Hz, the mix is %.0f Hz",
+                        track.getName(), trackFormat.getSampleRate(), sampleRate));
+            }
+            channels = Math.max(channels, trackFormat.getChannels());
+        }
+        this.format = new AudioFormat(sampleRate, 16, channels, true, false);
+        this.engines = new RenderEngine[this.tracks.length];
+        this.applied = new EffectSettings[this.tracks.length];
+        this.blocks = new float[this.tracks.length][][];
+        this.rendered = new int[this.tracks.length];
+        for (int i = 0; i < this.tracks.length; i++) {
+            createEngine(i);
+        }
+    }
+
+    private void createEngine(int track) {
+        SampleSource source = tracks[track].getSource();
+        EffectSettings settings = tracks[track].getSettings();
+        EffectChain chain = live ? EffectChain.forPlayback(settings, source.getFormat(), reverbDelayLine)
+                : EffectChain.fromSettings(settings, source.getFormat());
+        engines[track] = new RenderEngine(source, chain, settings, blockSize);
+        applied[track] = settings;
+    }
+
+    public AudioFormat getFormat() {
+        return format;
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    public int getTrackCount() {
+        return tracks.length;
+    }
+
+    // Output frames until the longest track ends at its current speed.
+    public long getFrameCount() {
+        long frames = 0;
+        for (Track track : tracks) {
+            frames = Math.max(frames, RenderEngine.getOutputFrameCount(track.getSource(), track.getSettings().speed));
+        }
+        return frames;
+    }
+
+    // Moves every track to an output frame. Effect state starts clean, as on a playback resume.
+    public void seek(long outputFrame) {
+        for (int i = 0; i < tracks.length; i++) {
+            createEngine(i);
+            engines[i].seek(outputFrame);
+        }
+    }
+
+    // Mixes up to blockSize frames into mix[channel][0..frames) and returns how many frames any
+    // track still had; 0 once every track has ended. A track that ends mid-block contributes
+    // silence for the rest of it.
+    public int mixBlock(float[][] mix, int frames) {
+        if (pool.getParallelism() > 1 && tracks.length > 1) {
+            pool.invoke(new TrackTask(0, tracks.length, frames));
+        } else {
+            renderTracks(0, tracks.length, frames);
+        }
+        int produced = 0;
+        for (float[] channel : mix) {
+            Arrays.fill(channel, 0, frames, 0f);
+        }
+        for (int i = 0; i < tracks.length; i++) {
+            int n = rendered[i];
+            if (n == 0) continue;
+            produced = Math.max(produced, n);
+            float[][] block = blocks[i];
+            int last = block.length - 1;
+            for (int ch = 0; ch < mix.length; ch++) {
+                float[] in = block[Math.min(ch, last)];
+                float[] out = mix[ch];
+                for (int f = 0; f < n; f++) {
+                    out[f] += in[f];
+                }
+            }
+        }
+        return produced;
+    }
+
+    // Runs on pool threads; each track's engine is touched by one task per block.
+    private void renderTracks(int from, int to, int frames) {
+        for (int i = from; i < to; i++) {
+            EffectSettings latest = tracks[i].getSettings();
+            if (latest != applied[i]) {
+                engines[i].applySettings(latest);
+                applied[i] = latest;
+            }
+            int n = (int) Math.min(frames, engines[i].getRemainingFrames());
+            rendered[i] = n;
+            if (n > 0) blocks[i] = engines[i].renderBlock(n);
+        }
+    }
+
+    // Renders frames [0, frames) of the mix to out as 16-bit PCM in getFormat().
+    public void renderTo(OutputStream out, long frames, RenderMonitor monitor) throws IOException {
+        long start = System.nanoTime();
+        long allocated = Telemetry.allocatedBytes();
+        seek(0);
+        float[][] mix = new float[format.getChannels()][blockSize];
+        byte[] pcm = new byte[blockSize * format.getFrameSize()];
+        long done = 0;
+        while (done < frames) {
+            if (monitor.isCancelled()) throw new CancellationException();
+            int n = (int) Math.min(frames - done, blockSize);
+            mixBlock(mix, n);
+            PcmConverter.toPcm16(mix, 0, n, pcm, 0);
+            out.write(pcm, 0, n * format.getFrameSize());
+            done += n;
+            monitor.progress(done, frames);
+        }
+        Telemetry.recordRender(format, frames, System.nanoTime() - start, Telemetry.allocatedBytes() - allocated);
+    }
+
+    // Splits the track range in halves until one track is left, so idle workers can steal.
+    private class TrackTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int from;
+        private final int to;
+        private final int frames;
+
+        TrackTask(int from, int to, int frames) {
+            this.from = from;
+            this.to = to;
+            this.frames = frames;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= 1) {
+                renderTracks(from, to, frames);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new TrackTask(from, mid, frames), new TrackTask(mid, to, frames));
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package ghibli;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.LongAdder;
+
+// Offline render split across cores. The timeline is cut into chunks of output frames; each chunk
+// is resampled and run through the stateless head of the effect chain on the pool, while the
+// stateful tail (echo delay line, low-pass memory) is applied to the chunks strictly in order on
+// the calling thread, handing its state from one chunk to the next. Because resampler positions
+// depend only on the absolute output frame and every stage is block-size invariant, the output is
+// bit-identical to RenderEngine.renderTo.
+class ParallelRenderer {
+    public static final int DEFAULT_CHUNK_FRAMES = 1 << 16;
+
+    private final SampleSource source;
+    private final EffectSettings settings;
+    private final int chunkFrames;
+    private final ForkJoinPool pool;
+    private final EffectChain head;
+    private final EffectChain tail;
+    private final LongAdder workerAllocated = new LongAdder();  // by pool threads, for Telemetry
+
+    // Finished chunks, in timeline order. Each chunk array is freshly allocated and is the sink's
+    // to keep.
+    interface ChunkSink {
+        void accept(float[][] chunk, long start, int frames) throws IOException;
+    }
+
+    public ParallelRenderer(SampleSource source, EffectSettings settings, int chunkFrames, ForkJoinPool pool) {
+        this(source, settings, EffectChain.fromSettings(settings, source.getFormat()), chunkFrames, pool);
+    }
+
+    public ParallelRenderer(SampleSource source, EffectSettings settings, EffectChain chain, int chunkFrames,
+                            ForkJoinPool pool) {
+        this.source = source;
+        this.settings = settings;
+        this.chunkFrames = chunkFrames;
+        this.pool = pool;
+        this.head = chain.statelessHead();
+        this.tail = chain.statefulTail();
+    }
+
+    public void renderTo(OutputStream out, long frames, RenderMonitor monitor) throws IOException {
+        int frameSize = source.getFormat().getFrameSize();
+        byte[] pcm = new byte[chunkFrames * frameSize];
+        render((chunk, start, length) -> {
+            PcmConverter.toPcm16(chunk, 0, length, pcm, 0);
+            out.write(pcm, 0, length * frameSize);
+        }, frames, monitor);
+    }
+
+    // Renders output frames [0, frames) as planar float chunks, before PCM conversion.
+    public void render(ChunkSink sink, long frames, RenderMonitor monitor) throws IOException {
+        long startNanos = System.nanoTime();
+        long allocated = Telemetry.allocatedBytes();
+        workerAllocated.reset();
+        // Bounded look-ahead keeps memory constant while still giving every worker something to do.
+        int maxInFlight = pool.getParallelism() * 2;
+        ArrayDeque<ForkJoinTask<float[][]>> inFlight = new ArrayDeque<>();
+        long nextStart = 0;
+        long done = 0;
+        try {
+            while (done < frames) {
+                while (inFlight.size() < maxInFlight && nextStart < frames) {
+                    long start = nextStart;
+                    int length = (int) Math.min(chunkFrames, frames - start);
+                    inFlight.add(pool.submit(() -> renderChunk(start, length)));
+                    nextStart += length;
+                }
+                float[][] chunk = inFlight.poll().join();
+                int length = chunk[0].length;
+                tail.process(chunk, length);
+                sink.accept(chunk, done, length);
+                done += length;
+                monitor.progress(done, frames);
+                if (monitor.isCancelled()) throw new CancellationException();
+            }
+            Telemetry.recordRender(source.getFormat(), frames, System.nanoTime() - startNanos,
+                    Telemetry.allocatedBytes() - allocated + workerAllocated.sum());
+        } finally {
+            for (ForkJoinTask<float[][]> task : inFlight) {
+                task.cancel(false);
+            }
+        }
+    }
+
+    private float[][] renderChunk(long start, int length) {
+        long allocated = Telemetry.allocatedBytes();
+        Resampler resampler = new Resampler(source);
+        resampler.setSpeed(settings.speed);
+        resampler.setQuality(settings.resampleQuality);
+        resampler.seek(start);
+        float[][] chunk = new float[source.getChannels()][length];
+        long startNanos = System.nanoTime();
+        resampler.process(chunk, length);
+        if (Telemetry.ENABLED) Telemetry.RESAMPLE.record(System.nanoTime() - startNanos, length * chunk.length);
+        head.process(chunk, length);
+        workerAllocated.add(Telemetry.allocatedBytes() - allocated);
+        return chunk;
+    }
+}
@@ -0,0 +1,15 @@
+package ghibli;
+
+// Conversion between interleaved 16-bit little-endian PCM and planar float blocks.
+class PcmConverter {
+    private static final SampleKernels KERNELS = SampleKernels.INSTANCE;
+
+    public static void toFloat(byte[] src, int offset, float[][] dest, int destOffset, int frames) {
+        KERNELS.toFloat(src, offset, dest, destOffset, frames);
+    }
+
+    // Saturates to the 16-bit range, truncating toward zero like the original integer path.
+    public static void toPcm16(float[][] src, int srcOffset, int frames, byte[] dest, int offset) {
+        KERNELS.toPcm16(src, srcOffset, frames, dest, offset);
+    }
+}
@@ -0,0 +1,110 @@
+package ghibli;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+// On-disk cache of peak/analysis sidecars, like the .peaks files DAWs keep. Entries are keyed by
+// the audio file's path, size and modification time, so an edited file simply misses. The
+// directory is kept under maxBytes by evicting the least recently used entries; an entry's mtime
+// doubles as its last-access time.
+class PeakCache {
+    private static final int MAGIC = 0x4750454b; // "GPEK"
+
+    private final Path directory;
+    private final long maxBytes;
+
+    public PeakCache(Path directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    public static PeakCache createDefault() {
+        Path dir = Paths.get(System.getProperty("user.home"), ".ghibli-audio-editor", "peaks");
+        return new PeakCache(dir, 256L * 1024 * 1024);
+    }
+
+    // Returns the cached index for audioFile, or null on a miss or unreadable entry.
+    public PeakIndex load(File audioFile) {
+        Path entry = entryFor(audioFile);
+        if (entry == null || !Files.isRegularFile(entry)) return null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(entry)))) {
+            if (in.readInt() != MAGIC) throw new IOException("Not a peak file");
+            PeakIndex index = PeakIndex.read(in);
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+            return index;
+        } catch (IOException ex) {
+            try {
+                Files.deleteIfExists(entry);
+            } catch (IOException ignored) {
+            }
+            return null;
+        }
+    }
+
+    public void store(File audioFile, PeakIndex index) {
+        Path entry = entryFor(audioFile);
+        if (entry == null) return;
+        try {
+            Files.createDirectories(directory);
+            // Write to a temp file and move it into place so readers never see a partial entry.
+            Path temp = Files.createTempFile(directory, "peaks", ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                index.write(out);
+            }
+            Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            evict();
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    private Path entryFor(File audioFile) {
+        try {
+            String key = audioFile.getCanonicalPath() + '|' + audioFile.length() + '|' + audioFile.lastModified();
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder name = new StringBuilder();
+            for (byte b : digest) {
+                name.append(String.format("%02x", b));
+            }
+            return directory.resolve(name.append(".peaks").toString());
+        } catch (IOException | NoSuchAlgorithmException ex) {
+            return null;
+        }
+    }
+
+    private void evict() throws IOException {
+        List<Path> entries = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(p -> p.toString().endsWith(".peaks")).forEach(entries::add);
+        }
+        long total = 0;
+        for (Path entry : entries) {
+            total += Files.size(entry);
+        }
+        if (total <= maxBytes) return;
+        entries.sort(Comparator.comparing(PeakCache::lastModified));
+        for (Path entry : entries) {
+            if (total <= maxBytes) break;
+            long size = Files.size(entry);
+            Files.deleteIfExists(entry);
+            total -= size;
+        }
+    }
+
+    private static FileTime lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path);
+        } catch (IOException ex) {
+            return FileTime.fromMillis(0);
+        }
+    }
+}
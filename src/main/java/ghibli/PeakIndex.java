@@ -0,0 +1,246 @@
+package ghibli;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+// Multi-resolution min/max index over a sample source, built in one pass. Each level stores the
+// smallest and largest sample (across all channels) of fixed-size buckets, so any frame range can
+// be summarised from at most LEVEL_RATIO buckets of the right level instead of scanning samples.
+// RMS is kept per STATS_BLOCK frames alongside.
+class PeakIndex {
+    public static final int[] BUCKET_SIZES = {256, 4096, 65536};
+    public static final int STATS_BLOCK = 4096;
+    private static final int LEVEL_RATIO = 16;
+    private static final int FORMAT_VERSION = 1;
+
+    private final SampleSource source;  // null when restored from cache before the audio is open
+    private final long frameCount;
+    private final short[][] mins;
+    private final short[][] maxs;
+    private final float[] rms;
+
+    private PeakIndex(SampleSource source, long frameCount, short[][] mins, short[][] maxs, float[] rms) {
+        this.source = source;
+        this.frameCount = frameCount;
+        this.mins = mins;
+        this.maxs = maxs;
+        this.rms = rms;
+    }
+
+    public static PeakIndex build(SampleSource source) {
+        long frameCount = source.getFrameCount();
+        Builder builder = new Builder(source.getChannels(), frameCount);
+        // Windows are a whole number of buckets, as Builder.append requires.
+        int windowFrames = BUCKET_SIZES[0] * 256;
+        byte[] window = new byte[windowFrames * source.getFormat().getFrameSize()];
+        for (long start = 0; start < frameCount; start += windowFrames) {
+            int frames = source.read(start, window, 0, windowFrames);
+            builder.append(window, frames);
+        }
+        return builder.build(source);
+    }
+
+    // Builds an index from PCM as it arrives, e.g. while a file is still decoding, and can hand out
+    // snapshots of what it has so far. Every chunk but the last must be a whole number of
+    // BUCKET_SIZES[0] frames. Coarser levels are kept up to date as finest buckets complete, so a
+    // snapshot costs one copy of the arrays.
+    static class Builder {
+        private final int channels;
+        private long frameCount;
+        private final short[][] mins = new short[BUCKET_SIZES.length][];
+        private final short[][] maxs = new short[BUCKET_SIZES.length][];
+        private double[] sumSquares;
+
+        // expectedFrames presizes the arrays; -1 if unknown. They grow if more frames arrive.
+        Builder(int channels, long expectedFrames) {
+            this.channels = channels;
+            long frames = Math.max(expectedFrames, BUCKET_SIZES[BUCKET_SIZES.length - 1]);
+            for (int level = 0; level < BUCKET_SIZES.length; level++) {
+                int buckets = (int) ((frames + BUCKET_SIZES[level] - 1) / BUCKET_SIZES[level]);
+                mins[level] = new short[buckets];
+                maxs[level] = new short[buckets];
+            }
+            sumSquares = new double[(int) ((frames + STATS_BLOCK - 1) / STATS_BLOCK)];
+        }
+
+        public long getFrameCount() {
+            return frameCount;
+        }
+
+        public void append(byte[] pcm, int frames) {
+            int bucketsPerStatsBlock = STATS_BLOCK / BUCKET_SIZES[0];
+            int bucket = (int) (frameCount / BUCKET_SIZES[0]);
+            for (int first = 0; first < frames; first += BUCKET_SIZES[0], bucket++) {
+                int end = Math.min(frames, first + BUCKET_SIZES[0]) * channels;
+                int lo = Short.MAX_VALUE;
+                int hi = Short.MIN_VALUE;
+                long squares = 0;
+                for (int i = first * channels; i < end; i++) {
+                    int sample = (pcm[2 * i + 1] << 8) | (pcm[2 * i] & 0xff);
+                    lo = Math.min(lo, sample);
+                    hi = Math.max(hi, sample);
+                    squares += sample * sample;
+                }
+                int block = bucket / bucketsPerStatsBlock;
+                if (block >= sumSquares.length) sumSquares = Arrays.copyOf(sumSquares, 2 * block + 1);
+                sumSquares[block] += squares;
+                // Bucket b of level l covers finest buckets [b * LEVEL_RATIO^l, (b + 1) * LEVEL_RATIO^l).
+                for (int level = 0, span = 1; level < BUCKET_SIZES.length; level++, span *= LEVEL_RATIO) {
+                    int index = bucket / span;
+                    if (index >= mins[level].length) {
+                        mins[level] = Arrays.copyOf(mins[level], 2 * index + 1);
+                        maxs[level] = Arrays.copyOf(maxs[level], 2 * index + 1);
+                    }
+                    boolean opens = bucket % span == 0;
+                    mins[level][index] = (short) (opens ? lo : Math.min(mins[level][index], lo));
+                    maxs[level][index] = (short) (opens ? hi : Math.max(maxs[level][index], hi));
+                }
+            }
+            frameCount += frames;
+        }
+
+        // Index of the frames appended so far, bound to source.
+        public PeakIndex build(SampleSource source) {
+            short[][] levelMins = new short[BUCKET_SIZES.length][];
+            short[][] levelMaxs = new short[BUCKET_SIZES.length][];
+            for (int level = 0; level < BUCKET_SIZES.length; level++) {
+                int buckets = (int) ((frameCount + BUCKET_SIZES[level] - 1) / BUCKET_SIZES[level]);
+                levelMins[level] = Arrays.copyOf(mins[level], buckets);
+                levelMaxs[level] = Arrays.copyOf(maxs[level], buckets);
+            }
+            float[] rms = new float[(int) ((frameCount + STATS_BLOCK - 1) / STATS_BLOCK)];
+            for (int block = 0; block < rms.length; block++) {
+                long frames = Math.min(STATS_BLOCK, frameCount - (long) block * STATS_BLOCK);
+                rms[block] = (float) (Math.sqrt(sumSquares[block] / (frames * channels)) / 32768.0);
+            }
+            return new PeakIndex(source, frameCount, levelMins, levelMaxs, rms);
+        }
+    }
+
+    // Same index bound to a (re)opened source, enabling sample-accurate queries when zoomed in.
+    public PeakIndex withSource(SampleSource source) {
+        return new PeakIndex(source, frameCount, mins, maxs, rms);
+    }
+
+    public SampleSource getSource() {
+        return source;
+    }
+
+    public int getStatsBlockCount() {
+        return rms.length;
+    }
+
+    // RMS of a STATS_BLOCK, as a fraction of full scale.
+    public float getRms(int block) {
+        return rms[block];
+    }
+
+    // Largest absolute sample of a STATS_BLOCK, as a fraction of full scale.
+    public float getPeak(int block) {
+        int level = 1; // BUCKET_SIZES[1] == STATS_BLOCK
+        return Math.max(-mins[level][block], maxs[level][block]) / 32768f;
+    }
+
+    public float getOverallRms() {
+        double sum = 0;
+        for (int block = 0; block < rms.length; block++) {
+            long frames = Math.min(STATS_BLOCK, frameCount - (long) block * STATS_BLOCK);
+            sum += (double) rms[block] * rms[block] * frames;
+        }
+        return frameCount == 0 ? 0f : (float) Math.sqrt(sum / frameCount);
+    }
+
+    public float getOverallPeak() {
+        float peak = 0f;
+        for (int block = 0; block < rms.length; block++) {
+            peak = Math.max(peak, getPeak(block));
+        }
+        return peak;
+    }
+
+    public void write(DataOutputStream out) throws IOException {
+        out.writeInt(FORMAT_VERSION);
+        out.writeLong(frameCount);
+        out.writeInt(BUCKET_SIZES.length);
+        for (int level = 0; level < BUCKET_SIZES.length; level++) {
+            out.writeInt(BUCKET_SIZES[level]);
+            out.writeInt(mins[level].length);
+            for (int i = 0; i < mins[level].length; i++) {
+                out.writeShort(mins[level][i]);
+                out.writeShort(maxs[level][i]);
+            }
+        }
+        out.writeInt(rms.length);
+        for (float value : rms) {
+            out.writeFloat(value);
+        }
+    }
+
+    // Restores an index written by write(). The result has no source until withSource is called.
+    public static PeakIndex read(DataInputStream in) throws IOException {
+        if (in.readInt() != FORMAT_VERSION) throw new IOException("Unsupported peak file version");
+        long frameCount = in.readLong();
+        if (in.readInt() != BUCKET_SIZES.length) throw new IOException("Unexpected peak levels");
+        short[][] mins = new short[BUCKET_SIZES.length][];
+        short[][] maxs = new short[BUCKET_SIZES.length][];
+        for (int level = 0; level < BUCKET_SIZES.length; level++) {
+            int buckets = (int) ((frameCount + BUCKET_SIZES[level] - 1) / BUCKET_SIZES[level]);
+            if (in.readInt() != BUCKET_SIZES[level] || in.readInt() != buckets) {
+                throw new IOException("Peak level mismatch");
+            }
+            mins[level] = new short[buckets];
+            maxs[level] = new short[buckets];
+            for (int i = 0; i < buckets; i++) {
+                mins[level][i] = in.readShort();
+                maxs[level][i] = in.readShort();
+            }
+        }
+        float[] rms = new float[in.readInt()];
+        for (int i = 0; i < rms.length; i++) {
+            rms[i] = in.readFloat();
+        }
+        return new PeakIndex(null, frameCount, mins, maxs, rms);
+    }
+
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    // Stores the min and max sample of frames [start, end) in out[0] and out[1]. Returns false if
+    // the range holds no frames. Cost is bounded by LEVEL_RATIO buckets or BUCKET_SIZES[0] frames.
+    public boolean getPeaks(long start, long end, int[] out) {
+        start = Math.max(0, start);
+        end = Math.min(frameCount, end);
+        if (end <= start) return false;
+        long span = end - start;
+        int level = BUCKET_SIZES.length - 1;
+        while (level > 0 && BUCKET_SIZES[level] > span) level--;
+        if (BUCKET_SIZES[level] > span && source != null) level = -1;
+        int lo = Short.MAX_VALUE;
+        int hi = Short.MIN_VALUE;
+        if (level < 0) {
+            int channels = source.getChannels();
+            for (long frame = start; frame < end; frame++) {
+                for (int ch = 0; ch < channels; ch++) {
+                    int sample = source.getSample(frame, ch);
+                    lo = Math.min(lo, sample);
+                    hi = Math.max(hi, sample);
+                }
+            }
+        } else {
+            int size = BUCKET_SIZES[level];
+            short[] min = mins[level];
+            short[] max = maxs[level];
+            int last = (int) ((end - 1) / size);
+            for (int bucket = (int) (start / size); bucket <= last; bucket++) {
+                lo = Math.min(lo, min[bucket]);
+                hi = Math.max(hi, max[bucket]);
+            }
+        }
+        out[0] = lo;
+        out[1] = hi;
+        return true;
+    }
+}
@@ -0,0 +1,136 @@
+package ghibli;
+
+import java.util.Arrays;
+
+// Immutable edit list over an unchanging source: the edited audio is the concatenation of pieces,
+// each a run of source frames. Cut, paste and trim build a new table from the old one's pieces, so
+// an edit costs O(pieces) however long the audio is and never copies a sample. Old tables stay
+// valid, which is all undo needs.
+class PieceTable {
+    private final long[] sourceStarts; // first source frame of each piece
+    private final long[] lengths;
+    private final long[] offsets;      // first edited frame of each piece; offsets[n] = frame count
+
+    private PieceTable(long[] sourceStarts, long[] lengths) {
+        this.sourceStarts = sourceStarts;
+        this.lengths = lengths;
+        this.offsets = new long[lengths.length + 1];
+        for (int i = 0; i < lengths.length; i++) {
+            offsets[i + 1] = offsets[i] + lengths[i];
+        }
+    }
+
+    // The unedited source: one piece covering frames [0, frameCount).
+    public static PieceTable of(long frameCount) {
+        return frameCount > 0 ? new PieceTable(new long[] {0}, new long[] {frameCount})
+                : new PieceTable(new long[0], new long[0]);
+    }
+
+    public long getFrameCount() {
+        return offsets[lengths.length];
+    }
+
+    public int getPieceCount() {
+        return lengths.length;
+    }
+
+    // Index of the piece holding edited frame, which must be in [0, getFrameCount()).
+    public int findPiece(long frame) {
+        int i = Arrays.binarySearch(offsets, 0, lengths.length, frame);
+        return i >= 0 ? i : -i - 2;
+    }
+
+    public long getOffset(int piece) {
+        return offsets[piece];
+    }
+
+    public long getSourceStart(int piece) {
+        return sourceStarts[piece];
+    }
+
+    public long getLength(int piece) {
+        return lengths[piece];
+    }
+
+    // Source frame behind an edited frame.
+    public long toSourceFrame(long frame) {
+        int piece = findPiece(frame);
+        return sourceStarts[piece] + frame - offsets[piece];
+    }
+
+    // Edited frames [from, to) as a table of their own, e.g. for the clipboard.
+    public PieceTable slice(long from, long to) {
+        from = clamp(from);
+        to = clamp(to);
+        if (to <= from) return of(0);
+        int first = findPiece(from);
+        int last = findPiece(to - 1);
+        int count = last - first + 1;
+        long[] starts = Arrays.copyOfRange(sourceStarts, first, last + 1);
+        long[] lens = Arrays.copyOfRange(lengths, first, last + 1);
+        long head = from - offsets[first];
+        starts[0] += head;
+        lens[0] -= head;
+        lens[count - 1] -= offsets[last + 1] - to;
+        return new PieceTable(starts, lens);
+    }
+
+    // This table without edited frames [from, to).
+    public PieceTable delete(long from, long to) {
+        return slice(0, from).append(slice(to, getFrameCount()));
+    }
+
+    // This table with clip inserted before edited frame at.
+    public PieceTable insert(long at, PieceTable clip) {
+        return slice(0, at).append(clip).append(slice(at, getFrameCount()));
+    }
+
+    // This table followed by other. Pieces that continue each other in the source are merged, so
+    // cutting and pasting back does not fragment the table.
+    public PieceTable append(PieceTable other) {
+        int n = lengths.length;
+        int m = other.lengths.length;
+        if (m == 0) return this;
+        if (n == 0) return other;
+        boolean merge = sourceStarts[n - 1] + lengths[n - 1] == other.sourceStarts[0];
+        int count = n + m - (merge ? 1 : 0);
+        long[] starts = Arrays.copyOf(sourceStarts, count);
+        long[] lens = Arrays.copyOf(lengths, count);
+        int skip = 0;
+        if (merge) {
+            lens[n - 1] += other.lengths[0];
+            skip = 1;
+        }
+        System.arraycopy(other.sourceStarts, skip, starts, n, m - skip);
+        System.arraycopy(other.lengths, skip, lens, n, m - skip);
+        return new PieceTable(starts, lens);
+    }
+
+    // Stores the min and max sample of edited frames [start, end) in out[0] and out[1], taken from
+    // an index of the source. Returns false if the range holds no frames. Each piece the range
+    // touches costs one PeakIndex query.
+    public boolean getPeaks(PeakIndex index, long start, long end, int[] out) {
+        start = clamp(start);
+        end = clamp(end);
+        if (end <= start) return false;
+        int lo = Short.MAX_VALUE;
+        int hi = Short.MIN_VALUE;
+        boolean found = false;
+        for (int piece = findPiece(start); piece < lengths.length && offsets[piece] < end; piece++) {
+            long from = sourceStarts[piece] + Math.max(start, offsets[piece]) - offsets[piece];
+            long to = sourceStarts[piece] + Math.min(end, offsets[piece + 1]) - offsets[piece];
+            if (index.getPeaks(from, to, out)) {
+                lo = Math.min(lo, out[0]);
+                hi = Math.max(hi, out[1]);
+                found = true;
+            }
+        }
+        out[0] = lo;
+        out[1] = hi;
+        return found;
+    }
+
+    private long clamp(long frame) {
+        return Math.max(0, Math.min(frame, getFrameCount()));
+    }
+}
@@ -0,0 +1,141 @@
+package ghibli;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import javax.sound.sampled.*;
+
+// Real-time playback on a dedicated audio thread. The UI publishes parameter changes as immutable
+// EffectSettings snapshots through an AtomicReference; the audio thread reads it once per block
+// and never blocks on or calls into Swing. Processors ramp changed parameters across that block.
+// The line buffer is sized from the target latency, and the position is published in a volatile
+// for the UI to poll at display rate. Buffer fill, underruns and render cost go to
+// Telemetry.PLAYBACK.
+class PlaybackEngine {
+    public static final int DEFAULT_BLOCK_SIZE = 512;
+    public static final int DEFAULT_TARGET_LATENCY_MS = 60;
+
+    private final SampleSource source;
+    private final int blockSize;
+    private final int targetLatencyMs;
+    private final AtomicReference<EffectSettings> settings = new AtomicReference<>();
+    private final AtomicReference<ConvolutionProcessor.DelayLine> reverbDelayLine;  // see EffectChain.forPlayback
+    private volatile boolean running;
+    private volatile long position;   // input frame currently being heard
+    private Thread thread;
+
+    public PlaybackEngine(SampleSource source, EffectSettings initial,
+                          AtomicReference<ConvolutionProcessor.DelayLine> reverbDelayLine, int blockSize, int targetLatencyMs) {
+        this.source = source;
+        this.reverbDelayLine = reverbDelayLine;
+        this.blockSize = blockSize;
+        this.targetLatencyMs = targetLatencyMs;
+        this.settings.set(initial);
+    }
+
+    // Lock-free: safe to call from the EDT on every slider tick.
+    public void setSettings(EffectSettings newSettings) {
+        settings.set(newSettings);
+    }
+
+    public long getPosition() {
+        return position;
+    }
+
+    public void setPosition(long frame) {
+        position = frame;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Starts from the current position. onFinished runs on the audio thread when the end of the
+    // source is reached (not when stopped); onFailed runs there instead if no output line can be
+    // opened or rendering throws. Either way the engine is no longer running.
+    public synchronized void start(Runnable onFinished, Consumer<Exception> onFailed) {
+        if (running) return;
+        running = true;
+        thread = new Thread(() -> run(onFinished, onFailed), "playback");
+        thread.setPriority(Thread.MAX_PRIORITY);
+        thread.start();
+    }
+
+    // Pauses; the next start() resumes from the last heard frame.
+    public synchronized void stop() {
+        running = false;
+        if (thread != null) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            thread = null;
+        }
+    }
+
+    private void run(Runnable onFinished, Consumer<Exception> onFailed) {
+        AudioFormat format = source.getFormat();
+        int frameSize = format.getFrameSize();
+        boolean finished = false;
+        Exception failure = null;
+        SourceDataLine line = null;
+        try {
+            EffectSettings applied = settings.get();
+            RenderEngine engine = new RenderEngine(source, EffectChain.forPlayback(applied, format, reverbDelayLine), applied, blockSize);
+            engine.seekInput(position);
+            DataLine.Info info = new DataLine.Info(SourceDataLine.class, format);
+            line = (SourceDataLine) AudioSystem.getLine(info);
+            int latencyFrames = (int) (format.getSampleRate() * targetLatencyMs / 1000);
+            line.open(format, Math.max(latencyFrames, 2 * blockSize) * frameSize);
+            line.start();
+
+            byte[] outputBuffer = new byte[blockSize * frameSize];
+            boolean firstWrite = true;
+            if (Telemetry.ENABLED) Telemetry.PLAYBACK.started();
+            while (running) {
+                EffectSettings latest = settings.get();
+                if (latest != applied) {
+                    engine.applySettings(latest);
+                    applied = latest;
+                }
+                int frames = (int) Math.min(blockSize, engine.getRemainingFrames());
+                if (frames <= 0) {
+                    finished = true;
+                    break;
+                }
+                if (Telemetry.ENABLED) {
+                    Telemetry.PLAYBACK.recordBuffer(line.getBufferSize() - line.available(), line.getBufferSize(), firstWrite);
+                    long start = System.nanoTime();
+                    long allocated = Telemetry.allocatedBytes();
+                    engine.renderPcm(outputBuffer, 0, frames);
+                    Telemetry.PLAYBACK.recordBlock(frames / format.getSampleRate(), System.nanoTime() - start,
+                            Telemetry.allocatedBytes() - allocated);
+                } else {
+                    engine.renderPcm(outputBuffer, 0, frames);
+                }
+                firstWrite = false;
+                line.write(outputBuffer, 0, frames * frameSize);
+                // What is heard trails what was rendered by whatever still sits in the line buffer.
+                int bufferedFrames = (line.getBufferSize() - line.available()) / frameSize;
+                position = Math.max(0, (long) (engine.getInputPosition() - bufferedFrames * engine.getSpeed()));
+            }
+            if (finished) {
+                line.drain();
+            } else {
+                line.stop();
+                line.flush();
+            }
+        } catch (LineUnavailableException | RuntimeException e) {
+            failure = e;
+        } finally {
+            if (line != null) line.close();
+        }
+        running = false;
+        if (failure != null) {
+            onFailed.accept(failure);
+        } else if (finished) {
+            position = 0;
+            onFinished.run();
+        }
+    }
+}
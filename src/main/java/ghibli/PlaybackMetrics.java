@@ -0,0 +1,74 @@
+package ghibli;
+
+// Playback thread counters. The audio thread is the only writer, so plain volatile fields suffice
+// (readers see a consistent value of each, if not of all together) and the thread never takes a
+// lock a JMX reader could be holding.
+class PlaybackMetrics implements PlaybackMetricsMXBean {
+    private volatile int bufferFillPercent;
+    private volatile int minBufferFillPercent = 100;
+    private volatile long underruns;
+    private volatile long blocks;
+    private volatile double renderedSeconds;
+    private volatile long renderNanos;
+    private volatile long allocatedBytes;
+
+    public void started() {
+        minBufferFillPercent = 100;
+    }
+
+    // Called before each write with the bytes still queued in the line. The line is filled before
+    // the device starts, so finding it empty afterwards means the device ran dry: an underrun.
+    public void recordBuffer(int bufferedBytes, int bufferSize, boolean firstWrite) {
+        int percent = (int) (100L * bufferedBytes / bufferSize);
+        bufferFillPercent = percent;
+        if (firstWrite) return;
+        if (percent < minBufferFillPercent) minBufferFillPercent = percent;
+        if (bufferedBytes == 0) underruns++;
+    }
+
+    public void recordBlock(double seconds, long nanos, long allocated) {
+        blocks++;
+        renderedSeconds += seconds;
+        renderNanos += nanos;
+        allocatedBytes += allocated;
+    }
+
+    @Override
+    public int getBufferFillPercent() {
+        return bufferFillPercent;
+    }
+
+    @Override
+    public int getMinBufferFillPercent() {
+        return minBufferFillPercent;
+    }
+
+    @Override
+    public long getUnderrunCount() {
+        return underruns;
+    }
+
+    @Override
+    public long getBlockCount() {
+        return blocks;
+    }
+
+    @Override
+    public double getRealtimeFactor() {
+        long nanos = renderNanos;
+        return nanos == 0 ? 0 : renderedSeconds / (nanos / 1e9);
+    }
+
+    @Override
+    public double getAllocatedBytesPerRenderedSecond() {
+        double seconds = renderedSeconds;
+        return seconds == 0 ? 0 : allocatedBytes / seconds;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("buffer %d%% (min %d%%), %d underruns, %.0fx realtime, %.0f B/s allocated",
+                getBufferFillPercent(), getMinBufferFillPercent(), getUnderrunCount(), getRealtimeFactor(),
+                getAllocatedBytesPerRenderedSecond());
+    }
+}
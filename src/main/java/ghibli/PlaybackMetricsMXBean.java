@@ -0,0 +1,18 @@
+package ghibli;
+
+// JMX view of the playback thread: line buffer health and render cost.
+public interface PlaybackMetricsMXBean {
+    // Line buffer fill just before the last write, and the lowest since playback last started.
+    int getBufferFillPercent();
+
+    int getMinBufferFillPercent();
+
+    long getUnderrunCount();
+
+    long getBlockCount();
+
+    // Seconds of audio rendered per second spent rendering; below 1 playback can't keep up.
+    double getRealtimeFactor();
+
+    double getAllocatedBytesPerRenderedSecond();
+}
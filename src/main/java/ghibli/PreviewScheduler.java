@@ -0,0 +1,95 @@
+package ghibli;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.swing.SwingUtilities;
+
+// Single background worker for preview renders with latest-wins semantics. Requests that arrive
+// while a render is running coalesce into one pending request; each request gets a generation
+// number, a running render is cancelled as soon as a newer generation exists, and results from
+// superseded generations are dropped instead of being delivered.
+class PreviewScheduler<T> {
+    interface Renderer<T> {
+        T render(EffectSettings settings, RenderMonitor monitor);
+    }
+
+    interface Listener<T> {
+        // Called on the EDT with the newest result; requestedAt is the System.nanoTime() of the request.
+        void previewReady(T result, EffectSettings settings, long requestedAt);
+    }
+
+    private static class Request {
+        final long generation;
+        final EffectSettings settings;
+        final long requestedAt;
+
+        Request(long generation, EffectSettings settings, long requestedAt) {
+            this.generation = generation;
+            this.settings = settings;
+            this.requestedAt = requestedAt;
+        }
+    }
+
+    private final Renderer<T> renderer;
+    private final Listener<T> listener;
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicLong cancelledRenders = new AtomicLong();
+    private Request pending;  // guarded by this
+
+    public PreviewScheduler(Renderer<T> renderer, Listener<T> listener) {
+        this.renderer = renderer;
+        this.listener = listener;
+        Thread worker = new Thread(this::runWorker, "preview-worker");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    public synchronized void request(EffectSettings settings) {
+        pending = new Request(generation.incrementAndGet(), settings, System.nanoTime());
+        notifyAll();
+    }
+
+    public long getCancelledRenders() {
+        return cancelledRenders.get();
+    }
+
+    private synchronized Request takeRequest() throws InterruptedException {
+        while (pending == null) {
+            wait();
+        }
+        Request request = pending;
+        pending = null;
+        return request;
+    }
+
+    private void runWorker() {
+        while (true) {
+            Request request;
+            try {
+                request = takeRequest();
+            } catch (InterruptedException e) {
+                return;
+            }
+            RenderMonitor monitor = new RenderMonitor() {
+                public void progress(long framesDone, long totalFrames) {
+                }
+
+                public boolean isCancelled() {
+                    return generation.get() != request.generation;
+                }
+            };
+            try {
+                T result = renderer.render(request.settings, monitor);
+                SwingUtilities.invokeLater(() -> {
+                    if (generation.get() == request.generation) {
+                        listener.previewReady(result, request.settings, request.requestedAt);
+                    }
+                });
+            } catch (CancellationException e) {
+                cancelledRenders.incrementAndGet();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
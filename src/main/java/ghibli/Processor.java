@@ -0,0 +1,18 @@
+package ghibli;
+
+// One stage of the effect chain. Blocks are planar: block[channel][frame], samples in [-1, 1).
+// Stateful stages must produce the same output regardless of how the stream is split into blocks.
+interface Processor {
+    void process(float[][] block, int frames);
+
+    // Retargets the stage from a new settings snapshot. Continuous parameters ramp to their new
+    // value across the next block instead of jumping, so live changes don't zipper.
+    void update(EffectSettings settings);
+
+    // Clears any carried state (delay lines, filter memory).
+    void reset();
+
+    // True if output depends only on the current block, so the stage can run on any chunk of a
+    // render independently of the others.
+    boolean isStateless();
+}
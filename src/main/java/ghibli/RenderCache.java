@@ -0,0 +1,196 @@
+package ghibli;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+
+// Bounded cache of rendered PCM, so going back to settings that were already heard (A/B toggling
+// echo, flicking the cutoff between two values) replays stored output instead of re-rendering.
+// Output is cut into SEGMENT_FRAMES-frame segments keyed by source, EffectSettings.fingerprint()
+// and segment index. Renders always start at frame 0 and every stage is block-size invariant, so
+// a segment's bytes depend on nothing else. Eviction is least-recently-used against a byte budget.
+class RenderCache {
+    public static final int SEGMENT_FRAMES = 1 << 16;
+
+    interface Renderer {
+        // Renders output frames [0, frames) to out, as RenderEngine.renderTo does.
+        void renderTo(OutputStream out, long frames, RenderMonitor monitor) throws IOException;
+    }
+
+    private static final class Key {
+        final SampleSource source;
+        final long fingerprint;
+        final long segment;
+
+        Key(SampleSource source, long fingerprint, long segment) {
+            this.source = source;
+            this.fingerprint = fingerprint;
+            this.segment = segment;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key k = (Key) o;
+            return source == k.source && fingerprint == k.fingerprint && segment == k.segment;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(source) * 31 + Long.hashCode(fingerprint * 31 + segment);
+        }
+    }
+
+    private final long byteBudget;
+    private final LinkedHashMap<Key, byte[]> segments = new LinkedHashMap<>(64, 0.75f, true);
+    private long bytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public RenderCache(long byteBudget) {
+        this.byteBudget = byteBudget;
+    }
+
+    // Writes frames [0, frames) for settings to out. Cached segments are copied out; from the first
+    // missing one the renderer runs from frame 0, since stateful effects can't start mid-stream,
+    // and its output is stored as it goes. Renders bigger than the whole budget bypass the cache:
+    // under LRU a sequential pass that large would evict itself before it could be reused.
+    public void renderTo(SampleSource source, EffectSettings settings, long frames, Renderer renderer,
+                         OutputStream out, RenderMonitor monitor) throws IOException {
+        int frameSize = source.getFormat().getFrameSize();
+        long segmentCount = (frames + SEGMENT_FRAMES - 1) / SEGMENT_FRAMES;
+        if (frames * frameSize > byteBudget) {
+            countMisses(segmentCount);
+            renderer.renderTo(out, frames, monitor);
+            return;
+        }
+        long fingerprint = settings.fingerprint();
+        long done = 0;
+        long segment = 0;
+        while (done < frames) {
+            if (monitor.isCancelled()) throw new CancellationException();
+            int length = (int) Math.min(SEGMENT_FRAMES, frames - done);
+            byte[] pcm = get(new Key(source, fingerprint, segment), length * frameSize);
+            if (pcm == null) break;
+            out.write(pcm, 0, length * frameSize);
+            done += length;
+            segment++;
+            monitor.progress(done, frames);
+        }
+        if (done == frames) return;
+        countMisses(segmentCount - segment);
+        Tee tee = new Tee(source, fingerprint, frameSize, out, done * frameSize);
+        renderer.renderTo(tee, frames, monitor);
+        tee.finish();
+    }
+
+    private synchronized byte[] get(Key key, int length) {
+        byte[] pcm = segments.get(key);
+        // A shorter render (the preview) may have stored a partial last segment.
+        if (pcm == null || pcm.length < length) return null;
+        hits++;
+        return pcm;
+    }
+
+    private synchronized void countMisses(long count) {
+        misses += count;
+    }
+
+    private synchronized void put(Key key, byte[] pcm) {
+        byte[] old = segments.put(key, pcm);
+        if (old != null) bytes -= old.length;
+        bytes += pcm.length;
+        Iterator<Map.Entry<Key, byte[]>> eldest = segments.entrySet().iterator();
+        while (bytes > byteBudget && eldest.hasNext()) {
+            bytes -= eldest.next().getValue().length;
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    // Drops every segment, e.g. when a new file replaces the source they were rendered from.
+    public synchronized void clear() {
+        segments.clear();
+        bytes = 0;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    @Override
+    public synchronized String toString() {
+        long lookups = hits + misses;
+        return String.format("%d hits, %d misses (%.0f%% hit), %d evicted, %.1f of %.0f MB",
+                hits, misses, lookups == 0 ? 0.0 : 100.0 * hits / lookups, evictions,
+                bytes / 1e6, byteBudget / 1e6);
+    }
+
+    // Passes a render through to out, skipping the bytes already served from the cache, and cuts
+    // it into segments for the cache. The trailing partial segment is stored only once the render
+    // has completed.
+    private class Tee extends OutputStream {
+        private final SampleSource source;
+        private final long fingerprint;
+        private final int segmentBytes;
+        private final OutputStream out;
+        private long skip;
+        private long segment;
+        private byte[] pcm;
+        private int fill;
+
+        Tee(SampleSource source, long fingerprint, int frameSize, OutputStream out, long skip) {
+            this.source = source;
+            this.fingerprint = fingerprint;
+            this.segmentBytes = SEGMENT_FRAMES * frameSize;
+            this.out = out;
+            this.skip = skip;
+            this.pcm = new byte[segmentBytes];
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            int skipped = (int) Math.min(skip, len);
+            if (skipped < len) out.write(b, off + skipped, len - skipped);
+            skip -= skipped;
+            while (len > 0) {
+                int n = Math.min(len, segmentBytes - fill);
+                System.arraycopy(b, off, pcm, fill, n);
+                fill += n;
+                off += n;
+                len -= n;
+                if (fill == segmentBytes) {
+                    put(new Key(source, fingerprint, segment++), pcm);
+                    pcm = new byte[segmentBytes];
+                    fill = 0;
+                }
+            }
+        }
+
+        void finish() {
+            if (fill > 0) put(new Key(source, fingerprint, segment), Arrays.copyOf(pcm, fill));
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package ghibli;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.CancellationException;
+
+// Shared render core for playback, preview and export: resample (or time-stretch) a block, run it
+// through the effect chain, and convert to PCM. All stages work on planar float blocks of
+// blockSize frames.
+class RenderEngine {
+    public static final int DEFAULT_BLOCK_SIZE = 1024;
+    public static final double MAX_SPEED = 2.0;  // fastest speed live settings can move to (the speed slider's maximum)
+
+    private final SampleSource source;
+    private final int frameSize;
+    private final int blockSize;
+    private final Resampler resampler;
+    private final TimeStretcher stretcher;  // created up front so toggling preservePitch live does not allocate
+    private boolean stretching;
+    private final EffectChain chain;
+    private final float[][] block;
+
+    public RenderEngine(SampleSource source, EffectSettings settings, int blockSize) {
+        this(source, EffectChain.fromSettings(settings, source.getFormat()), settings, blockSize);
+    }
+
+    public RenderEngine(SampleSource source, EffectChain chain, EffectSettings settings, int blockSize) {
+        this.source = source;
+        this.frameSize = source.getFormat().getFrameSize();
+        this.blockSize = blockSize;
+        this.resampler = new Resampler(source);
+        this.resampler.setSpeed(settings.speed);
+        this.resampler.setQuality(settings.resampleQuality);
+        this.resampler.reserve(blockSize, Math.max(MAX_SPEED, settings.speed));
+        this.chain = chain;
+        this.block = new float[source.getChannels()][blockSize];
+        this.stretcher = new TimeStretcher(source);
+        stretcher.update(settings);
+        if (settings.preservePitch) {
+            stretcher.seekInput(0);
+            stretching = true;
+        }
+    }
+
+    public SampleSource getSource() {
+        return source;
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    // Applies a new settings snapshot from the next block on.
+    public void applySettings(EffectSettings settings) {
+        double position = getInputPosition();
+        resampler.setSpeed(settings.speed);
+        resampler.setQuality(settings.resampleQuality);
+        stretcher.update(settings);
+        // Switching modes hands the current source position over to the other reader.
+        if (settings.preservePitch != stretching) {
+            stretching = settings.preservePitch;
+            seekInput(position);
+        }
+        chain.update(settings);
+    }
+
+    public void seek(long outputFrame) {
+        resampler.seek(outputFrame);
+        if (stretching) {
+            stretcher.seekInput(outputFrame * resampler.getSpeed());
+        }
+    }
+
+    // Continues from an input frame position, e.g. when playback resumes after a pause.
+    public void seekInput(double position) {
+        if (stretching) {
+            stretcher.seekInput(position);
+        } else {
+            resampler.seekInput(position);
+        }
+    }
+
+    public double getSpeed() {
+        return resampler.getSpeed();
+    }
+
+    public double getInputPosition() {
+        return stretching ? stretcher.getPosition() : resampler.getPosition();
+    }
+
+    // Output frames left before the read position passes the end of the source at the current speed.
+    public long getRemainingFrames() {
+        double remaining = resampler.getTotalFrames() - getInputPosition();
+        return remaining <= 0 ? 0 : (long) Math.ceil(remaining / resampler.getSpeed());
+    }
+
+    // Number of output frames a full render at the given speed produces.
+    public static long getOutputFrameCount(SampleSource source, double speed) {
+        return (long) (source.getFrameCount() / speed);
+    }
+
+    // Renders up to blockSize frames into the internal planar block and returns it.
+    public float[][] renderBlock(int frames) {
+        long start = Telemetry.ENABLED ? System.nanoTime() : 0;
+        if (stretching) {
+            stretcher.process(block, frames);
+        } else {
+            resampler.process(block, frames);
+        }
+        if (Telemetry.ENABLED) {
+            StageMetrics metrics = stretching ? Telemetry.TIME_STRETCH : Telemetry.RESAMPLE;
+            metrics.record(System.nanoTime() - start, frames * block.length);
+        }
+        chain.process(block, frames);
+        return block;
+    }
+
+    public void renderPcm(byte[] dest, int offset, int frames) {
+        renderPcm(dest, offset, frames, RenderMonitor.NONE);
+    }
+
+    // Checks for cancellation between blocks.
+    public void renderPcm(byte[] dest, int offset, int frames, RenderMonitor monitor) {
+        while (frames > 0) {
+            if (monitor.isCancelled()) throw new CancellationException();
+            int n = Math.min(frames, blockSize);
+            renderBlock(n);
+            PcmConverter.toPcm16(block, 0, n, dest, offset);
+            offset += n * frameSize;
+            frames -= n;
+        }
+    }
+
+    public void renderTo(OutputStream out, long frames, RenderMonitor monitor) throws IOException {
+        long start = System.nanoTime();
+        long allocated = Telemetry.allocatedBytes();
+        byte[] buffer = new byte[blockSize * frameSize];
+        long done = 0;
+        while (done < frames) {
+            if (monitor.isCancelled()) throw new CancellationException();
+            int n = (int) Math.min(frames - done, blockSize);
+            renderPcm(buffer, 0, n);
+            out.write(buffer, 0, n * frameSize);
+            done += n;
+            monitor.progress(done, frames);
+        }
+        Telemetry.recordRender(source.getFormat(), frames, System.nanoTime() - start,
+                Telemetry.allocatedBytes() - allocated);
+    }
+}
@@ -0,0 +1,70 @@
+package ghibli;
+
+// Counters for completed offline renders; cancelled renders are not counted. Preview latency is
+// recorded by the editor from slider change to repaint.
+class RenderMetrics implements RenderMetricsMXBean {
+    private final LatencyStats previewLatency = new LatencyStats();
+    private long renders;
+    private double renderedSeconds;
+    private long renderNanos;
+    private long allocatedBytes;
+    private double lastRealtimeFactor;
+
+    public LatencyStats getPreviewLatency() {
+        return previewLatency;
+    }
+
+    public synchronized void record(double seconds, long nanos, long allocated) {
+        renders++;
+        renderedSeconds += seconds;
+        renderNanos += nanos;
+        allocatedBytes += allocated;
+        lastRealtimeFactor = nanos == 0 ? 0 : seconds / (nanos / 1e9);
+    }
+
+    @Override
+    public synchronized long getRenderCount() {
+        return renders;
+    }
+
+    @Override
+    public synchronized double getRenderedSeconds() {
+        return renderedSeconds;
+    }
+
+    @Override
+    public synchronized double getRealtimeFactor() {
+        return renderNanos == 0 ? 0 : renderedSeconds / (renderNanos / 1e9);
+    }
+
+    @Override
+    public synchronized double getLastRealtimeFactor() {
+        return lastRealtimeFactor;
+    }
+
+    @Override
+    public synchronized double getAllocatedBytesPerRenderedSecond() {
+        return renderedSeconds == 0 ? 0 : allocatedBytes / renderedSeconds;
+    }
+
+    @Override
+    public double getPreviewLatencyLastMillis() {
+        return previewLatency.getLastMillis();
+    }
+
+    @Override
+    public double getPreviewLatencyMeanMillis() {
+        return previewLatency.getMeanMillis();
+    }
+
+    @Override
+    public double getPreviewLatencyMaxMillis() {
+        return previewLatency.getMaxMillis();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%d renders, %.0fx realtime (last %.0fx), %.0f B allocated per rendered second",
+                renders, getRealtimeFactor(), lastRealtimeFactor, getAllocatedBytesPerRenderedSecond());
+    }
+}
@@ -0,0 +1,20 @@
+package ghibli;
+
+// JMX view of offline renders (preview, export, batch) and of preview latency.
+public interface RenderMetricsMXBean {
+    long getRenderCount();
+
+    double getRenderedSeconds();
+
+    double getRealtimeFactor();
+
+    double getLastRealtimeFactor();
+
+    double getAllocatedBytesPerRenderedSecond();
+
+    double getPreviewLatencyLastMillis();
+
+    double getPreviewLatencyMeanMillis();
+
+    double getPreviewLatencyMaxMillis();
+}
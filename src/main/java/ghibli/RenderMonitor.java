@@ -0,0 +1,17 @@
+package ghibli;
+
+// Progress and cancellation hook for long offline renders.
+interface RenderMonitor {
+    RenderMonitor NONE = new RenderMonitor() {
+        public void progress(long framesDone, long totalFrames) {
+        }
+
+        public boolean isCancelled() {
+            return false;
+        }
+    };
+
+    void progress(long framesDone, long totalFrames);
+
+    boolean isCancelled();
+}
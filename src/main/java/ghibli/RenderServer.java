@@ -0,0 +1,451 @@
+package ghibli;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.sound.sampled.AudioFormat;
+
+// Embedded HTTP render service for tools that want exports without the Swing UI. Requests are
+// handled one thread each on a virtual-thread executor (a cached pool before Java 21), so clients
+// waiting on a progress stream cost next to nothing. The rendering itself runs on a fixed pool of
+// CPU threads behind a bounded queue; a job that finds the queue full is refused with 503 instead
+// of piling up. Each job renders on one thread with RenderEngine, as the editor's export and batch
+// mode do, so the pool size is the number of renders in flight. Bodies and replies are Java
+// properties text, with the keys of EffectSettings.fromProperties plus input and output.
+//
+//   java GhibliAudioEditor --serve --input <dir> [--port <n>] [--jobs <n>] [--queue <n>] [--output <dir>]
+//
+//   POST   /jobs                submit (input=<path>, [output=<path>], settings...); 202 + id
+//   GET    /jobs/<id>           status
+//   GET    /jobs/<id>/progress  streams a status line per progress percent until the job ends
+//   DELETE /jobs/<id>           cancel
+//   GET    /stats               queue depth, running and finished jobs, wait and render latency
+//
+// The server binds to the loopback interface only, but a web page can still reach it, so inputs
+// must resolve inside --input and outputs inside --output (symlinks followed), an output may not
+// be its own input, and requests carrying an Origin header are refused. A job whose output a
+// queued or running job is already writing is refused with 409. Submissions must be sent
+// as "Content-Type: text/plain; charset=utf-8".
+class RenderServer {
+    public static final int DEFAULT_PORT = 8470;
+    private static final long PROGRESS_POLL_MILLIS = 500;
+    private static final int RETAINED_JOBS = 1000; // finished jobs kept for status queries
+    private static final String REQUEST_TYPE = "text/plain; charset=utf-8";
+
+    private final HttpServer server;
+    private final ExecutorService handlers;
+    private final ThreadPoolExecutor renderPool;
+    private final Path inputDir;   // real paths, so containment checks see through symlinks
+    private final Path outputDir;
+    private final int blockSize;
+    private final ConcurrentSkipListMap<Long, Job> jobs = new ConcurrentSkipListMap<>();
+    private final Set<Path> activeOutputs = ConcurrentHashMap.newKeySet();  // of queued and running jobs
+    private final AtomicLong nextId = new AtomicLong(1);
+    private final AtomicInteger completed = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final AtomicInteger rejected = new AtomicInteger();
+    private final LatencyStats queueLatency = new LatencyStats();   // submit to render start
+    private final LatencyStats renderLatency = new LatencyStats();  // render start to finish
+
+    public RenderServer(int port, int workers, int queue, Path inputDir, Path outputDir, int blockSize)
+            throws IOException {
+        this.inputDir = inputDir.toRealPath();
+        this.outputDir = outputDir.toRealPath();
+        this.blockSize = blockSize;
+        renderPool = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queue), runnable -> {
+                    Thread thread = new Thread(runnable, "render-worker");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        handlers = newHandlerExecutor();
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/jobs", this::handleJobs);
+        server.createContext("/stats", this::handleStats);
+        server.setExecutor(handlers);
+    }
+
+    public static int run(String[] args) throws Exception {
+        int port = DEFAULT_PORT;
+        int workers = Runtime.getRuntime().availableProcessors();
+        int queue = -1;
+        Path inputDir = null;
+        Path outputDir = Paths.get("rendered");
+        for (int i = 0; i < args.length; i++) {
+            String flag = args[i];
+            if (!flag.startsWith("--") || i + 1 >= args.length) {
+                return usage("Unexpected argument: " + flag);
+            }
+            String value = args[++i];
+            switch (flag) {
+                case "--port": port = Integer.parseInt(value); break;
+                case "--jobs": workers = Integer.parseInt(value); break;
+                case "--queue": queue = Integer.parseInt(value); break;
+                case "--input": inputDir = Paths.get(value); break;
+                case "--output": outputDir = Paths.get(value); break;
+                default: return usage("Unknown flag: " + flag);
+            }
+        }
+        if (inputDir == null || !Files.isDirectory(inputDir)) {
+            return usage("--input must be an existing directory");
+        }
+        if (queue < 0) {
+            queue = workers * 4;
+        }
+        Files.createDirectories(outputDir);
+        RenderServer server = new RenderServer(port, workers, queue, inputDir, outputDir, RenderEngine.DEFAULT_BLOCK_SIZE);
+        server.start();
+        System.out.println("Render server on http://localhost:" + server.getPort() + "/ (workers: " + workers
+                + ", queue: " + queue + ", input: " + server.inputDir + ", output: " + server.outputDir + ")");
+        Thread.currentThread().join(); // serve until the process is killed
+        return 0;
+    }
+
+    private static int usage(String error) {
+        System.err.println(error);
+        System.err.println("Usage: --serve --input <dir> [--port <n>] [--jobs <n>] [--queue <n>] [--output <dir>]");
+        return 2;
+    }
+
+    // One virtual thread per request where the JDK has them (Java 21+). Looked up by name so the
+    // class still builds and runs on Java 17, where a cached pool stands in.
+    private static ExecutorService newHandlerExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "render-http");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    // Stops accepting requests, cancels queued and running jobs and waits for the workers.
+    public void stop() throws InterruptedException {
+        server.stop(0);
+        for (Job job : jobs.values()) {
+            job.cancelled = true;
+        }
+        renderPool.shutdown();
+        renderPool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        handlers.shutdown();
+    }
+
+    private void handleJobs(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (refuseCrossOrigin(exchange)) return;
+            String[] path = exchange.getRequestURI().getPath().split("/");
+            String method = exchange.getRequestMethod();
+            // path is {"", "jobs"[, id[, "progress"]]}
+            if (path.length == 2 && method.equals("POST")) {
+                submit(exchange);
+                return;
+            }
+            Job job = path.length >= 3 ? findJob(path[2]) : null;
+            if (job == null) {
+                reply(exchange, 404, "error=No such job\n");
+            } else if (path.length == 3 && method.equals("GET")) {
+                reply(exchange, 200, job.status());
+            } else if (path.length == 3 && method.equals("DELETE")) {
+                job.cancelled = true;
+                reply(exchange, 202, job.status());
+            } else if (path.length == 4 && path[3].equals("progress") && method.equals("GET")) {
+                streamProgress(exchange, job);
+            } else {
+                reply(exchange, 405, "error=Unsupported request\n");
+            }
+        }
+    }
+
+    // Browsers send Origin on every cross-site POST and DELETE; local tools have no reason to.
+    private static boolean refuseCrossOrigin(HttpExchange exchange) throws IOException {
+        if (exchange.getRequestHeaders().getFirst("Origin") == null) return false;
+        reply(exchange, 403, "error=Cross-origin requests are not accepted\n");
+        return true;
+    }
+
+    private Job findJob(String id) {
+        try {
+            return jobs.get(Long.parseLong(id));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private void submit(HttpExchange exchange) throws IOException {
+        String type = exchange.getRequestHeaders().getFirst("Content-Type");
+        if (type == null || !type.equalsIgnoreCase(REQUEST_TYPE)) {
+            reply(exchange, 415, "error=Content-Type must be " + REQUEST_TYPE + "\n");
+            return;
+        }
+        Properties request = new Properties();
+        try (Reader in = new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8)) {
+            request.load(in);
+        }
+        String input = request.getProperty("input");
+        Path inputPath = input == null ? null : resolveInput(input);
+        if (inputPath == null) {
+            reply(exchange, 400, "error=input must name an existing file under " + inputDir + "\n");
+            return;
+        }
+        String output = request.getProperty("output");
+        Path outputPath = resolveOutput(output != null ? output
+                : inputPath.getFileName().toString().replaceFirst("\\.[^.]*$", "") + ".wav");
+        if (outputPath == null) {
+            reply(exchange, 400, "error=output must name a file under " + outputDir + "\n");
+            return;
+        }
+        if (Files.exists(outputPath) && Files.isSameFile(inputPath, outputPath)) {
+            reply(exchange, 400, "error=output must not overwrite the input\n");
+            return;
+        }
+        EffectSettings settings;
+        try {
+            settings = EffectSettings.fromProperties(request);
+        } catch (IOException | RuntimeException e) {
+            reply(exchange, 400, "error=" + e.getMessage() + "\n");
+            return;
+        }
+        if (!activeOutputs.add(outputPath)) {
+            reply(exchange, 409, "error=Another job is already writing " + outputPath + "\n");
+            return;
+        }
+        Job job = new Job(nextId.getAndIncrement(), inputPath, outputPath, settings);
+        pruneFinished();
+        jobs.put(job.id, job);
+        try {
+            renderPool.execute(job::run);
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.id);
+            activeOutputs.remove(outputPath);
+            rejected.incrementAndGet();
+            reply(exchange, 503, "error=Render queue is full\n");
+            return;
+        }
+        exchange.getResponseHeaders().set("Location", "/jobs/" + job.id);
+        reply(exchange, 202, job.status());
+    }
+
+    // The real path of an existing regular file under inputDir, or null.
+    private Path resolveInput(String input) {
+        try {
+            Path path = inputDir.resolve(input).toRealPath();
+            return path.startsWith(inputDir) && Files.isRegularFile(path) ? path : null;
+        } catch (IOException | InvalidPathException e) {
+            return null;
+        }
+    }
+
+    // The path of a file to write directly or in a subdirectory under outputDir, or null if it
+    // would land anywhere else. The parent must exist, and an existing file may not be a link.
+    private Path resolveOutput(String output) {
+        try {
+            Path path = outputDir.resolve(output).normalize();
+            Path parent = path.getParent();
+            if (parent == null || !parent.toRealPath().startsWith(outputDir)) return null;
+            path = parent.toRealPath().resolve(path.getFileName());
+            return path.startsWith(outputDir) && !path.equals(outputDir) && !Files.isSymbolicLink(path)
+                    && !Files.isDirectory(path) ? path : null;
+        } catch (IOException | InvalidPathException e) {
+            return null;
+        }
+    }
+
+    // Forgets the oldest finished jobs once more than RETAINED_JOBS are held.
+    private void pruneFinished() {
+        Iterator<Job> oldest = jobs.values().iterator();
+        while (jobs.size() >= RETAINED_JOBS && oldest.hasNext()) {
+            if (oldest.next().isDone()) oldest.remove();
+        }
+    }
+
+    // Chunked reply of one status block per progress change, ending with the final status. The
+    // handler thread just waits on the job, which is what the virtual-thread executor is for.
+    private void streamProgress(HttpExchange exchange, Job job) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream out = exchange.getResponseBody()) {
+            int lastPercent = -1;
+            while (true) {
+                int percent = job.waitForProgress(lastPercent, PROGRESS_POLL_MILLIS);
+                boolean done = job.isDone();
+                if (percent != lastPercent || done) {
+                    out.write(job.status().getBytes(StandardCharsets.UTF_8));
+                    out.write('\n');
+                    out.flush();
+                    lastPercent = percent;
+                }
+                if (done) break;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void handleStats(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (refuseCrossOrigin(exchange)) return;
+            StringBuilder body = new StringBuilder();
+            body.append("queue.depth=").append(renderPool.getQueue().size()).append('\n');
+            body.append("queue.capacity=").append(renderPool.getQueue().size()
+                    + renderPool.getQueue().remainingCapacity()).append('\n');
+            body.append("workers=").append(renderPool.getMaximumPoolSize()).append('\n');
+            body.append("running=").append(renderPool.getActiveCount()).append('\n');
+            body.append("completed=").append(completed.get()).append('\n');
+            body.append("failed=").append(failed.get()).append('\n');
+            body.append("rejected=").append(rejected.get()).append('\n');
+            appendLatency(body, "wait", queueLatency);
+            appendLatency(body, "render", renderLatency);
+            reply(exchange, 200, body.toString());
+        }
+    }
+
+    private static void appendLatency(StringBuilder body, String name, LatencyStats stats) {
+        body.append(name).append(".count=").append(stats.getCount()).append('\n');
+        body.append(name).append(".meanMs=").append(String.format(Locale.ROOT, "%.1f", stats.getMeanMillis())).append('\n');
+        body.append(name).append(".maxMs=").append(String.format(Locale.ROOT, "%.1f", stats.getMaxMillis())).append('\n');
+        body.append(name).append(".lastMs=").append(String.format(Locale.ROOT, "%.1f", stats.getLastMillis())).append('\n');
+    }
+
+    private static void reply(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    private enum State { QUEUED, RUNNING, DONE, FAILED, CANCELLED }
+
+    // One submitted render. Written by its worker, read by any number of status and progress
+    // requests; progress waiters are woken on every whole-percent change.
+    private class Job implements RenderMonitor {
+        final long id;
+        final Path input;
+        final Path output;
+        final EffectSettings settings;
+        final long submittedAt = System.nanoTime();
+        volatile boolean cancelled;
+        private State state = State.QUEUED;
+        private int percent;
+        private long framesDone;
+        private long totalFrames;
+        private String error;
+
+        Job(long id, Path input, Path output, EffectSettings settings) {
+            this.id = id;
+            this.input = input;
+            this.output = output;
+            this.settings = settings;
+        }
+
+        void run() {
+            long start = System.nanoTime();
+            queueLatency.record(start - submittedAt);
+            if (cancelled) {
+                finish(State.CANCELLED, null);
+                return;
+            }
+            synchronized (this) {
+                state = State.RUNNING;
+            }
+            // Whatever is thrown, including Errors such as a fault reading a mapped file, the job
+            // ends in a final state so status and progress requests don't wait on it forever.
+            State result = State.FAILED;
+            String message = null;
+            try (SampleSource source = MappedSampleSource.open(input.toFile())) {
+                AudioFormat format = source.getFormat();
+                long frames = RenderEngine.getOutputFrameCount(source, settings.speed);
+                try (WavWriter out = WavWriter.create(output, format)) {
+                    new RenderEngine(source, settings, blockSize).renderTo(out, frames, this);
+                }
+                renderLatency.record(System.nanoTime() - start);
+                result = State.DONE;
+            } catch (CancellationException e) {
+                result = State.CANCELLED;
+            } catch (Throwable e) {
+                message = e.toString();
+            } finally {
+                if (result == State.DONE) {
+                    completed.incrementAndGet();
+                } else {
+                    deleteOutput();
+                    if (result == State.FAILED) failed.incrementAndGet();
+                }
+                finish(result, message);
+            }
+        }
+
+        private void deleteOutput() {
+            try {
+                Files.deleteIfExists(output);
+            } catch (IOException e) {
+                // Leave the partial file; the job is reported as not done either way.
+            }
+        }
+
+        // Called once the output is complete or deleted, so a job for the same output may follow.
+        private synchronized void finish(State finalState, String message) {
+            activeOutputs.remove(output);
+            state = finalState;
+            error = message;
+            notifyAll();
+        }
+
+        @Override
+        public synchronized void progress(long framesDone, long totalFrames) {
+            this.framesDone = framesDone;
+            this.totalFrames = totalFrames;
+            int newPercent = (int) (100.0 * framesDone / Math.max(1, totalFrames));
+            if (newPercent != percent) {
+                percent = newPercent;
+                notifyAll();
+            }
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        synchronized boolean isDone() {
+            return state != State.QUEUED && state != State.RUNNING;
+        }
+
+        // Waits up to timeoutMillis for progress past lastPercent or the end; returns the percent.
+        synchronized int waitForProgress(int lastPercent, long timeoutMillis) throws InterruptedException {
+            if (percent == lastPercent && !isDone()) {
+                wait(timeoutMillis);
+            }
+            return percent;
+        }
+
+        synchronized String status() {
+            StringBuilder s = new StringBuilder();
+            s.append("id=").append(id).append('\n');
+            s.append("state=").append(state.name().toLowerCase(Locale.ROOT)).append('\n');
+            s.append("progress=").append(percent).append('\n');
+            s.append("frames=").append(framesDone).append('/').append(totalFrames).append('\n');
+            s.append("input=").append(input).append('\n');
+            s.append("output=").append(output).append('\n');
+            if (error != null) s.append("error=").append(error).append('\n');
+            return s.toString();
+        }
+    }
+}
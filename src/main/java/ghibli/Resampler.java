@@ -0,0 +1,351 @@
+package ghibli;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Reads the source at a variable rate, producing planar float blocks. Output frame n maps to input
+// position basePosition + (n - baseOutput) * speed, so a render split at any output frame reads
+// exactly the same positions as an unsplit one.
+class Resampler {
+    // Interpolation kernels, cheapest first.
+    enum Quality {
+        LINEAR("Linear"),
+        CUBIC("Cubic"),
+        SINC("Windowed sinc");
+
+        private final String label;
+
+        Quality(String label) {
+            this.label = label;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+
+        // Parses "linear", "cubic" or "sinc" in any case and locale; LINEAR, the original
+        // interpolation, for anything else.
+        public static Quality parse(String name) {
+            if (name != null) {
+                for (Quality quality : values()) {
+                    if (quality.name().equals(name.trim().toUpperCase(Locale.ROOT))) return quality;
+                }
+            }
+            return LINEAR;
+        }
+    }
+
+    // Sinc kernel: 2 * SINC_HALF_TAPS taps at speed <= 1, stretched by the speed when
+    // downsampling so the cutoff follows the output Nyquist. Coefficients are tabulated at
+    // SINC_PHASES fractional offsets and linearly interpolated between neighbouring phases.
+    static final int SINC_HALF_TAPS = 16;
+    static final int SINC_PHASES = 256;
+    private static final double SINC_CUTOFF = 0.88;  // fraction of Nyquist at the -6 dB point
+    private static final double KAISER_BETA = 7.0;  // ~70 dB stopband
+
+    // The kernel stretch is rounded up to a multiple of SINC_STRETCH_STEP, which keeps the cutoff
+    // at or below the output Nyquist and leaves few enough distinct tables to build ahead of time.
+    // Tables take a millisecond or two to build, so they are shared across resamplers (export
+    // chunks each get their own) and looked up without locking, since playback reads them on the
+    // audio thread. Stretches past SINC_MAX_CACHED_STRETCH are built per resampler.
+    static final double SINC_STRETCH_STEP = 1.0 / 32;
+    private static final double SINC_MAX_CACHED_STRETCH = 8.0;
+    private static final AtomicReferenceArray<SincTable> SINC_TABLES =
+            new AtomicReferenceArray<>((int) Math.round((SINC_MAX_CACHED_STRETCH - 1) / SINC_STRETCH_STEP) + 1);
+
+    private final SampleSource source;
+    private final int channels;
+    private final int frameSize;
+
+    private Quality quality = Quality.LINEAR;
+    private double speed = 1.0;
+    private double basePosition;
+    private long baseOutput;
+    private long outputFrame;
+
+    private byte[] raw = new byte[0];
+    private float[][] window;
+    private int[] index = new int[0];
+    private float[] weight = new float[0];
+
+    private SincTable sinc;
+    private float[] coefficients = new float[0];
+
+    public Resampler(SampleSource source) {
+        this.source = source;
+        this.channels = source.getChannels();
+        this.frameSize = source.getFormat().getFrameSize();
+        this.window = new float[channels][0];
+    }
+
+    public void setSpeed(double speed) {
+        if (speed == this.speed) return;
+        basePosition = getPosition();
+        baseOutput = outputFrame;
+        this.speed = speed;
+    }
+
+    public double getSpeed() {
+        return speed;
+    }
+
+    public void setQuality(Quality quality) {
+        this.quality = quality;
+    }
+
+    public Quality getQuality() {
+        return quality;
+    }
+
+    // Sizes the buffers for blocks of up to frames output frames at any speed up to maxSpeed and
+    // any quality, so process() does not allocate while the speed stays in that range.
+    public void reserve(int frames, double maxSpeed) {
+        int taps = sincTaps(sincStretch(maxSpeed));
+        ensureCapacity(frames, (int) Math.ceil(frames * maxSpeed) + taps + 2);
+        if (coefficients.length < taps) coefficients = new float[taps];
+    }
+
+    // Builds the shared sinc tables for every speed up to maxSpeed, so resamplers at those
+    // speeds never build one on the audio thread. Slow; call it from a background thread.
+    public static void prepareSincTables(double maxSpeed) {
+        double top = sincStretch(maxSpeed);
+        for (int i = 0; i * SINC_STRETCH_STEP <= top - 1; i++) {
+            sincTable(1 + i * SINC_STRETCH_STEP);
+        }
+    }
+
+    // Positions the next output frame at outputFrame * speed.
+    public void seek(long outputFrame) {
+        this.outputFrame = outputFrame;
+        basePosition = 0;
+        baseOutput = 0;
+    }
+
+    // Continues from an arbitrary input position, e.g. when resuming playback.
+    public void seekInput(double position) {
+        basePosition = position;
+        baseOutput = outputFrame;
+    }
+
+    public double getPosition() {
+        return positionOf(outputFrame);
+    }
+
+    public long getOutputFrame() {
+        return outputFrame;
+    }
+
+    // Read from the source each time, since a source still being decoded grows while it plays.
+    public long getTotalFrames() {
+        return source.getFrameCount();
+    }
+
+    private double positionOf(long frame) {
+        return basePosition + (frame - baseOutput) * speed;
+    }
+
+    public void process(float[][] out, int frames) {
+        if (frames <= 0) return;
+        long totalFrames = source.getFrameCount();
+        if (totalFrames == 0) {
+            for (float[] samples : out) Arrays.fill(samples, 0, frames, 0f);
+            outputFrame += frames;
+            return;
+        }
+        // At unity speed on whole frames every kernel reduces to a copy, which the linear path
+        // does exactly; the sinc kernel's cutoff would otherwise shave the top of the band.
+        Quality mode = speed == 1.0 && basePosition == Math.rint(basePosition) ? Quality.LINEAR : quality;
+        if (mode == Quality.SINC && (sinc == null || sinc.stretch != sincStretch(speed))) {
+            sinc = sincTable(sincStretch(speed));
+            if (coefficients.length < sinc.taps) coefficients = new float[sinc.taps];
+        }
+        int left;
+        int right;
+        switch (mode) {
+            case CUBIC:
+                left = 1;
+                right = 2;
+                break;
+            case SINC:
+                left = sinc.taps / 2 - 1;
+                right = sinc.taps / 2;
+                break;
+            default:
+                left = 0;
+                right = 1;
+        }
+
+        // The window covers every input frame the kernel touches. Frames outside the source
+        // repeat the first or last frame, matching the old end-of-file clamp.
+        long first = Math.min((long) positionOf(outputFrame), totalFrames - 1);
+        long last = Math.min((long) positionOf(outputFrame + frames - 1), totalFrames - 1);
+        long windowStart = first - left;
+        int windowFrames = (int) (last + right - windowStart + 1);
+        ensureCapacity(frames, windowFrames);
+
+        long readStart = Math.max(0, windowStart);
+        long readEnd = Math.min(last + right, totalFrames - 1);
+        int offset = (int) (readStart - windowStart);
+        int read = source.read(readStart, raw, 0, (int) (readEnd - readStart + 1));
+        PcmConverter.toFloat(raw, 0, window, offset, read);
+        for (float[] samples : window) {
+            Arrays.fill(samples, 0, offset, samples[offset]);
+            Arrays.fill(samples, offset + read, windowFrames, samples[offset + read - 1]);
+        }
+
+        for (int i = 0; i < frames; i++) {
+            double position = positionOf(outputFrame + i);
+            long frame = Math.min((long) position, totalFrames - 1);
+            index[i] = (int) (frame - windowStart);
+            weight[i] = (float) Math.min(1.0, position - frame);
+        }
+        switch (mode) {
+            case CUBIC:
+                processCubic(out, frames);
+                break;
+            case SINC:
+                processSinc(out, frames, left);
+                break;
+            default:
+                processLinear(out, frames);
+        }
+        outputFrame += frames;
+    }
+
+    private void processLinear(float[][] out, int frames) {
+        for (int ch = 0; ch < channels; ch++) {
+            float[] in = window[ch];
+            float[] samples = out[ch];
+            for (int i = 0; i < frames; i++) {
+                int j = index[i];
+                float w = weight[i];
+                samples[i] = in[j] * (1f - w) + in[j + 1] * w;
+            }
+        }
+    }
+
+    // Catmull-Rom spline through the two frames either side of the position.
+    private void processCubic(float[][] out, int frames) {
+        for (int ch = 0; ch < channels; ch++) {
+            float[] in = window[ch];
+            float[] samples = out[ch];
+            for (int i = 0; i < frames; i++) {
+                int j = index[i];
+                float t = weight[i];
+                float y0 = in[j - 1], y1 = in[j], y2 = in[j + 1], y3 = in[j + 2];
+                float a = 0.5f * (3f * (y1 - y2) + y3 - y0);
+                float b = y0 - 2.5f * y1 + 2f * y2 - 0.5f * y3;
+                float c = 0.5f * (y2 - y0);
+                samples[i] = ((a * t + b) * t + c) * t + y1;
+            }
+        }
+    }
+
+    // One set of coefficients per output frame, shared by every channel.
+    private void processSinc(float[][] out, int frames, int left) {
+        int taps = sinc.taps;
+        float[] table = sinc.table;
+        float[] delta = sinc.delta;
+        float[] coef = coefficients;
+        for (int i = 0; i < frames; i++) {
+            float phase = weight[i] * SINC_PHASES;
+            int p = Math.min((int) phase, SINC_PHASES - 1);
+            float t = phase - p;
+            int row = p * taps;
+            for (int k = 0; k < taps; k++) {
+                coef[k] = table[row + k] + t * delta[row + k];
+            }
+            int start = index[i] - left;
+            for (int ch = 0; ch < channels; ch++) {
+                float[] in = window[ch];
+                float sum = 0f;
+                for (int k = 0; k < taps; k++) {
+                    sum += coef[k] * in[start + k];
+                }
+                out[ch][i] = sum;
+            }
+        }
+    }
+
+    // The kernel stretch for a speed: 1 when upsampling, otherwise the speed rounded up to a step.
+    static double sincStretch(double speed) {
+        if (speed <= 1.0) return 1.0;
+        return 1 + Math.ceil((speed - 1) / SINC_STRETCH_STEP - 1e-9) * SINC_STRETCH_STEP;
+    }
+
+    private static int sincTaps(double stretch) {
+        return 2 * (int) Math.ceil(SINC_HALF_TAPS * stretch);
+    }
+
+    // Two threads missing the same table both build it; the first one published wins.
+    private static SincTable sincTable(double stretch) {
+        int slot = (int) Math.round((stretch - 1) / SINC_STRETCH_STEP);
+        if (slot >= SINC_TABLES.length()) return new SincTable(stretch);
+        SincTable table = SINC_TABLES.get(slot);
+        if (table != null) return table;
+        SINC_TABLES.compareAndSet(slot, null, new SincTable(stretch));
+        return SINC_TABLES.get(slot);
+    }
+
+    private static double besselI0(double x) {
+        double sum = 1;
+        double term = 1;
+        double q = x * x / 4;
+        for (int k = 1; k < 50 && term > sum * 1e-12; k++) {
+            term *= q / ((double) k * k);
+            sum += term;
+        }
+        return sum;
+    }
+
+    private void ensureCapacity(int frames, int windowFrames) {
+        if (index.length < frames) {
+            index = new int[frames];
+            weight = new float[frames];
+        }
+        if (window[0].length < windowFrames) {
+            window = new float[channels][windowFrames];
+            raw = new byte[windowFrames * frameSize];
+        }
+    }
+
+    // Kaiser-windowed sinc with its cutoff at SINC_CUTOFF of the lower of the input and output
+    // Nyquist rates. Each phase is normalized to unity gain so DC passes without ripple.
+    private static class SincTable {
+        final double stretch;
+        final int taps;
+        final float[] table;  // SINC_PHASES + 1 rows of taps coefficients
+        final float[] delta;  // row p + 1 minus row p, for interpolating between phases
+
+        SincTable(double stretch) {
+            this.stretch = stretch;
+            this.taps = sincTaps(stretch);
+            int half = taps / 2;
+            double cutoff = SINC_CUTOFF / stretch;
+            double norm = besselI0(KAISER_BETA);
+            table = new float[(SINC_PHASES + 1) * taps];
+            for (int p = 0; p <= SINC_PHASES; p++) {
+                double frac = (double) p / SINC_PHASES;
+                double sum = 0;
+                for (int k = 0; k < taps; k++) {
+                    double x = k - (half - 1) - frac;
+                    double r = x / half;
+                    double kaiser = Math.abs(r) >= 1 ? 0 : besselI0(KAISER_BETA * Math.sqrt(1 - r * r)) / norm;
+                    double arg = Math.PI * cutoff * x;
+                    double h = (arg == 0 ? 1 : Math.sin(arg) / arg) * kaiser;
+                    table[p * taps + k] = (float) h;
+                    sum += h;
+                }
+                for (int k = 0; k < taps; k++) {
+                    table[p * taps + k] /= (float) sum;
+                }
+            }
+            delta = new float[SINC_PHASES * taps];
+            for (int i = 0; i < delta.length; i++) {
+                delta[i] = table[i + taps] - table[i];
+            }
+        }
+    }
+}
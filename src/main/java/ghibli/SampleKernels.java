@@ -0,0 +1,42 @@
+package ghibli;
+
+// Inner loops of the per-sample stages: PCM16 decode/encode, gain and hard clip. INSTANCE is the
+// Vector API implementation when jdk.incubator.vector is on the module path (--add-modules) and
+// the hardware has at least 128-bit vectors, and ScalarKernels otherwise. -Dghibli.simd=false
+// forces the scalar path. Both produce bit-identical results.
+interface SampleKernels {
+    SampleKernels INSTANCE = load();
+
+    // Interleaved 16-bit little-endian PCM to planar floats in [-1, 1).
+    void toFloat(byte[] src, int offset, float[][] dest, int destOffset, int frames);
+
+    // Planar floats to interleaved PCM16, truncating toward zero and saturating at the 16-bit range.
+    void toPcm16(float[][] src, int srcOffset, int frames, byte[] dest, int offset);
+
+    // samples[i] *= gain for i in [from, to).
+    void scale(float[] samples, int from, int to, float gain);
+
+    // samples[i] *= start + step * (i + 1), a per-sample ramp ending on start + step * to.
+    void scaleRamp(float[] samples, int from, int to, float start, float step);
+
+    // Clamps samples to [-threshold, threshold].
+    void clip(float[] samples, int from, int to, float threshold);
+
+    // Clamps with a threshold ramping like scaleRamp.
+    void clipRamp(float[] samples, int from, int to, float start, float step);
+
+    String getName();
+
+    private static SampleKernels load() {
+        if (Boolean.parseBoolean(System.getProperty("ghibli.simd", "true"))
+                && ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                // Loaded by name so this class never links against the incubator module.
+                return (SampleKernels) Class.forName("ghibli.VectorKernels").getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError | UnsupportedOperationException e) {
+                // Fall through to scalar.
+            }
+        }
+        return new ScalarKernels();
+    }
+}
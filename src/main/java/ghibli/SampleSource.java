@@ -0,0 +1,27 @@
+package ghibli;
+
+import java.io.Closeable;
+import javax.sound.sampled.AudioFormat;
+
+// Random-access view of decoded 16-bit signed little-endian PCM. Callers read samples or
+// small windows on demand, so nothing has to hold the whole file on the heap.
+interface SampleSource extends Closeable {
+    AudioFormat getFormat();
+
+    long getFrameCount();
+
+    // Returns the 16-bit sample at the given frame and channel.
+    int getSample(long frame, int channel);
+
+    // Copies up to frameCount interleaved frames starting at startFrame into dest.
+    // Returns the number of frames copied (0 at or past the end).
+    int read(long startFrame, byte[] dest, int offset, int frameCount);
+
+    default int getChannels() {
+        return getFormat().getChannels();
+    }
+
+    @Override
+    default void close() {
+    }
+}
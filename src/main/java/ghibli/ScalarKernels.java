@@ -0,0 +1,69 @@
+package ghibli;
+
+// Plain Java loops, used where the Vector API is unavailable and for vector loop tails.
+class ScalarKernels implements SampleKernels {
+    static final float TO_FLOAT = 1f / 32768f;
+
+    @Override
+    public void toFloat(byte[] src, int offset, float[][] dest, int destOffset, int frames) {
+        int channels = dest.length;
+        for (int ch = 0; ch < channels; ch++) {
+            float[] out = dest[ch];
+            int pos = offset + ch * 2;
+            int step = channels * 2;
+            for (int i = 0; i < frames; i++, pos += step) {
+                out[destOffset + i] = ((src[pos + 1] << 8) | (src[pos] & 0xff)) * TO_FLOAT;
+            }
+        }
+    }
+
+    @Override
+    public void toPcm16(float[][] src, int srcOffset, int frames, byte[] dest, int offset) {
+        int channels = src.length;
+        for (int ch = 0; ch < channels; ch++) {
+            float[] in = src[ch];
+            int pos = offset + ch * 2;
+            int step = channels * 2;
+            for (int i = 0; i < frames; i++, pos += step) {
+                int sample = (int) (in[srcOffset + i] * 32768f);
+                sample = Math.max(-32768, Math.min(32767, sample));
+                dest[pos] = (byte) sample;
+                dest[pos + 1] = (byte) (sample >> 8);
+            }
+        }
+    }
+
+    @Override
+    public void scale(float[] samples, int from, int to, float gain) {
+        for (int i = from; i < to; i++) {
+            samples[i] *= gain;
+        }
+    }
+
+    @Override
+    public void scaleRamp(float[] samples, int from, int to, float start, float step) {
+        for (int i = from; i < to; i++) {
+            samples[i] *= start + step * (i + 1);
+        }
+    }
+
+    @Override
+    public void clip(float[] samples, int from, int to, float threshold) {
+        for (int i = from; i < to; i++) {
+            samples[i] = Math.max(-threshold, Math.min(threshold, samples[i]));
+        }
+    }
+
+    @Override
+    public void clipRamp(float[] samples, int from, int to, float start, float step) {
+        for (int i = from; i < to; i++) {
+            float t = start + step * (i + 1);
+            samples[i] = Math.max(-t, Math.min(t, samples[i]));
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "scalar";
+    }
+}
@@ -0,0 +1,57 @@
+package ghibli;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+// Counts the background readers (preview, loudness analysis, export) of each loaded source, so a
+// source replaced by a new load is closed only once the last of them is done with it. An edited
+// source counts as a reader of the file it reads through. Whoever replaces the current source
+// must publish the new one before retiring the old.
+class SourceReaders {
+    private final Map<SampleSource, Integer> readers = new IdentityHashMap<>();
+    private final Map<SampleSource, Boolean> retired = new IdentityHashMap<>();  // closed at last release
+
+    // Registers a reader of the source current supplies and returns it, or null if there is none.
+    // current is read again once registered, so a source retired in between is never handed out.
+    public SampleSource acquire(Supplier<SampleSource> current) {
+        SampleSource source = current.get();
+        if (source == null) return null;
+        SampleSource base = base(source);
+        synchronized (this) {
+            readers.merge(base, 1, Integer::sum);
+        }
+        SampleSource now = current.get();
+        if (now != null && base(now) == base) return source;
+        release(source);
+        return null;
+    }
+
+    // Ends a read started by acquire; closes the source if it was retired meanwhile.
+    public void release(SampleSource source) {
+        SampleSource base = base(source);
+        boolean close;
+        synchronized (this) {
+            int left = readers.merge(base, -1, Integer::sum);
+            if (left == 0) readers.remove(base);
+            close = left == 0 && retired.remove(base) != null;
+        }
+        if (close) base.close();
+    }
+
+    // Closes a source that is no longer current, now or when its last reader releases it.
+    public void retire(SampleSource source) {
+        SampleSource base = base(source);
+        synchronized (this) {
+            if (readers.containsKey(base)) {
+                retired.put(base, Boolean.TRUE);
+                return;
+            }
+        }
+        base.close();
+    }
+
+    private static SampleSource base(SampleSource source) {
+        return source instanceof EditedSampleSource ? ((EditedSampleSource) source).getSource() : source;
+    }
+}
@@ -0,0 +1,124 @@
+package ghibli;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Cost of one render stage as a log-scale histogram of nanoseconds per sample: four buckets per
+// power of two in 1/16 ns steps, so a percentile is within 25% of the true value. Stages of the
+// parallel export record from several pool threads at once, hence the atomics; recording a block
+// is a handful of uncontended adds.
+class StageMetrics implements StageMetricsMXBean {
+    private static final int UNITS_PER_NANO = 16;
+    private static final int BUCKETS = 252;   // covers every positive long
+
+    private final String name;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder blocks = new LongAdder();
+    private final LongAdder nanos = new LongAdder();
+    private final LongAdder samples = new LongAdder();
+
+    public StageMetrics(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void record(long elapsedNanos, int sampleCount) {
+        if (sampleCount <= 0) return;
+        counts.incrementAndGet(bucket(elapsedNanos * UNITS_PER_NANO / sampleCount));
+        blocks.increment();
+        nanos.add(elapsedNanos);
+        samples.add(sampleCount);
+    }
+
+    private static int bucket(long units) {
+        if (units < 4) return (int) Math.max(0, units);
+        int exponent = 63 - Long.numberOfLeadingZeros(units);
+        return 4 * (exponent - 1) + (int) ((units >>> (exponent - 2)) & 3);
+    }
+
+    private static double upperNanos(int bucket) {
+        if (bucket < 4) return (bucket + 1.0) / UNITS_PER_NANO;
+        int exponent = bucket / 4 + 1;
+        return (double) ((5L + bucket % 4) << (exponent - 2)) / UNITS_PER_NANO;
+    }
+
+    @Override
+    public long getBlockCount() {
+        return blocks.sum();
+    }
+
+    @Override
+    public double getMeanNanosPerSample() {
+        long n = samples.sum();
+        return n == 0 ? 0 : (double) nanos.sum() / n;
+    }
+
+    @Override
+    public double getP50NanosPerSample() {
+        return percentile(0.5);
+    }
+
+    @Override
+    public double getP99NanosPerSample() {
+        return percentile(0.99);
+    }
+
+    @Override
+    public double getMaxNanosPerSample() {
+        return percentile(1.0);
+    }
+
+    // Upper bound of the bucket holding the q-quantile block.
+    private double percentile(double q) {
+        long[] snapshot = getBucketCounts();
+        long total = 0;
+        for (long c : snapshot) total += c;
+        if (total == 0) return 0;
+        long target = Math.max(1, (long) Math.ceil(q * total));
+        long seen = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            seen += snapshot[i];
+            if (seen >= target) return upperNanos(i);
+        }
+        return upperNanos(snapshot.length - 1);
+    }
+
+    @Override
+    public long[] getBucketCounts() {
+        long[] snapshot = new long[BUCKETS];
+        int length = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            if (snapshot[i] != 0) length = i + 1;
+        }
+        return Arrays.copyOf(snapshot, length);
+    }
+
+    @Override
+    public double[] getBucketUpperNanos() {
+        double[] bounds = new double[getBucketCounts().length];
+        for (int i = 0; i < bounds.length; i++) {
+            bounds[i] = upperNanos(i);
+        }
+        return bounds;
+    }
+
+    @Override
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        blocks.reset();
+        nanos.reset();
+        samples.reset();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s %.2f/%.2f", name, getP50NanosPerSample(), getP99NanosPerSample());
+    }
+}
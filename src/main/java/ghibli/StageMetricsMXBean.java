@@ -0,0 +1,21 @@
+package ghibli;
+
+// JMX view of one render stage's cost, in nanoseconds per sample (frames x channels).
+public interface StageMetricsMXBean {
+    long getBlockCount();
+
+    double getMeanNanosPerSample();
+
+    double getP50NanosPerSample();
+
+    double getP99NanosPerSample();
+
+    double getMaxNanosPerSample();
+
+    // Histogram up to the highest occupied bucket: count per bucket and each bucket's upper bound.
+    long[] getBucketCounts();
+
+    double[] getBucketUpperNanos();
+
+    void reset();
+}
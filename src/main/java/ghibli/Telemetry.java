@@ -0,0 +1,134 @@
+package ghibli;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.sound.sampled.AudioFormat;
+
+// Process-wide performance counters, published as MXBeans under the "ghibli" JMX domain so
+// jconsole or any JMX client can watch a running editor or batch job. Recording is on unless
+// -Dghibli.telemetry=false; each hook costs a couple of System.nanoTime calls and atomic adds per
+// block, not per sample.
+class Telemetry {
+    public static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("ghibli.telemetry", "true"));
+
+    public static final PlaybackMetrics PLAYBACK = new PlaybackMetrics();
+    public static final RenderMetrics RENDER = new RenderMetrics();
+    public static final StageMetrics RESAMPLE = new StageMetrics("resample");
+    public static final StageMetrics TIME_STRETCH = new StageMetrics("time-stretch");
+    private static final StageMetrics[] EFFECTS = new StageMetrics[EffectChain.Stage.values().length];
+    private static final com.sun.management.ThreadMXBean ALLOCATION = allocationBean();
+    private static boolean registered;
+
+    static {
+        for (EffectChain.Stage stage : EffectChain.Stage.values()) {
+            EFFECTS[stage.ordinal()] = new StageMetrics(stage.toString());
+        }
+    }
+
+    private Telemetry() {
+    }
+
+    public static StageMetrics stage(EffectChain.Stage stage) {
+        return EFFECTS[stage.ordinal()];
+    }
+
+    // Every stage, in render order.
+    public static List<StageMetrics> stages() {
+        List<StageMetrics> all = new ArrayList<>();
+        all.add(RESAMPLE);
+        all.add(TIME_STRETCH);
+        all.addAll(List.of(EFFECTS));
+        return all;
+    }
+
+    // Wraps a chain stage so each block's cost is recorded; null and disabled telemetry pass through.
+    public static Processor timed(EffectChain.Stage stage, Processor processor) {
+        if (!ENABLED || processor == null) return processor;
+        return new TimedProcessor(processor, stage(stage));
+    }
+
+    private static com.sun.management.ThreadMXBean allocationBean() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!ENABLED || !(threads instanceof com.sun.management.ThreadMXBean)) return null;
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threads;
+        return bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled() ? bean : null;
+    }
+
+    // Bytes allocated by the current thread so far, or 0 where the JVM can't tell; only deltas mean
+    // anything.
+    public static long allocatedBytes() {
+        return ALLOCATION == null ? 0 : ALLOCATION.getCurrentThreadAllocatedBytes();
+    }
+
+    // Records a completed offline render of frames output frames.
+    public static void recordRender(AudioFormat format, long frames, long nanos, long allocated) {
+        RENDER.record(frames / format.getSampleRate(), nanos, allocated);
+    }
+
+    // Registers the MXBeans with the platform MBean server; safe to call more than once.
+    public static synchronized void registerMBeans() {
+        if (registered || !ENABLED) return;
+        registered = true;
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.registerMBean(PLAYBACK, new ObjectName("ghibli:type=Playback"));
+            server.registerMBean(RENDER, new ObjectName("ghibli:type=Render"));
+            for (StageMetrics stage : stages()) {
+                server.registerMBean(stage, new ObjectName("ghibli:type=Stage,name=" + stage.getName()));
+            }
+        } catch (JMException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // One line per area, for the editor's overlay.
+    public static List<String> summary() {
+        List<String> lines = new ArrayList<>();
+        lines.add("Playback: " + PLAYBACK);
+        lines.add("Render: " + RENDER);
+        lines.add("Preview latency: " + RENDER.getPreviewLatency());
+        StringBuilder costs = new StringBuilder("ns/sample p50/p99:");
+        for (StageMetrics stage : stages()) {
+            if (stage.getBlockCount() > 0) costs.append(' ').append(stage);
+        }
+        lines.add(costs.toString());
+        return lines;
+    }
+
+    private static class TimedProcessor implements Processor {
+        private final Processor processor;
+        private final StageMetrics metrics;
+
+        TimedProcessor(Processor processor, StageMetrics metrics) {
+            this.processor = processor;
+            this.metrics = metrics;
+        }
+
+        @Override
+        public void process(float[][] block, int frames) {
+            long start = System.nanoTime();
+            processor.process(block, frames);
+            metrics.record(System.nanoTime() - start, frames * block.length);
+        }
+
+        @Override
+        public void update(EffectSettings settings) {
+            processor.update(settings);
+        }
+
+        @Override
+        public void reset() {
+            processor.reset();
+        }
+
+        @Override
+        public boolean isStateless() {
+            return processor.isStateless();
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package ghibli;
+
+import java.util.Arrays;
+
+// Pitch-preserving tempo change by WSOLA (waveform-similarity overlap-add), with an independent
+// pitch shift. The pitch shift is a Resampler view of the source at speed 2^(semitones / 12); WSOLA
+// then walks that view at tempo / pitch input frames per output frame, so tempo and pitch end up
+// independent. Each step takes a Hann window of 2 * HOP frames centred near the nominal input
+// position, nudged within +-SEARCH frames to the offset whose first half best matches what
+// naturally followed the previous window, and overlap-adds it HOP frames after the previous one.
+// Every buffer, the pitch view's included, is sized at construction from the sample rate and
+// MAX_PITCH_SPEED, so processing within the pitch slider's range does not allocate once the sinc
+// tables are prepared (Resampler.prepareSincTables).
+class TimeStretcher {
+    public static final double MAX_PITCH_SPEED = 2.0;  // +12 semitones, the pitch slider's limit
+    private static final double HOP_SECONDS = 0.020;
+    private static final double SEARCH_SECONDS = 0.010;
+
+    private final Resampler pitchShifter;
+    private final int channels;
+    private final int hop;
+    private final int window;
+    private final int search;
+    private final float[] hann;
+
+    private final float[][] region;     // candidate windows: [center - search - hop, center + search + hop)
+    private final float[][] target;     // natural continuation of the previous window
+    private final float[] regionMono;
+    private final float[] targetMono;
+    private final float[][] overlap;    // overlap-add accumulator, one window long
+    private final float[][] scratch;    // reads that straddle the start of the source
+    private final float[][] fifo;       // finished output frames not yet handed out
+    private int fifoStart;
+    private int fifoLength;
+
+    private double tempo = 1.0;
+    private double pitch = 1.0;         // resampling speed of the pitch-shifted view
+    private double center;              // nominal window centre in pitch-shifted frames
+    private long previous;              // chosen centre of the previous window
+    private boolean primed;             // false until the first window after a seek is placed
+    private double headPosition;        // view position of the first frame in the fifo
+
+    public TimeStretcher(SampleSource source) {
+        this.pitchShifter = new Resampler(source);
+        this.channels = source.getChannels();
+        float sampleRate = source.getFormat().getSampleRate();
+        this.hop = Math.max(16, (int) Math.round(sampleRate * HOP_SECONDS));
+        this.window = 2 * hop;
+        this.search = Math.max(8, (int) Math.round(sampleRate * SEARCH_SECONDS));
+        this.hann = new float[window];
+        for (int i = 0; i < window; i++) {
+            hann[i] = (float) (0.5 - 0.5 * Math.cos(2 * Math.PI * i / window));
+        }
+        this.region = new float[channels][window + 2 * search];
+        this.target = new float[channels][hop];
+        this.regionMono = new float[window + 2 * search];
+        this.targetMono = new float[hop];
+        this.overlap = new float[channels][window];
+        this.scratch = new float[channels][window + 2 * search];
+        this.fifo = new float[channels][hop];
+        pitchShifter.reserve(window + 2 * search, MAX_PITCH_SPEED);
+    }
+
+    public void update(EffectSettings settings) {
+        tempo = settings.speed;
+        pitchShifter.setQuality(settings.resampleQuality);
+        double newPitch = Math.pow(2, settings.pitchSemitones / 12.0);
+        if (newPitch != pitch) {
+            // Keep the same source position under the new view's coordinates.
+            double scale = pitch / newPitch;
+            center *= scale;
+            previous = Math.round(previous * scale);
+            headPosition *= scale;
+            pitch = newPitch;
+        }
+    }
+
+    // Restarts at a source frame position; the first window is placed without a search.
+    public void seekInput(double position) {
+        center = position / pitch;
+        headPosition = center;
+        primed = false;
+        fifoStart = 0;
+        fifoLength = 0;
+        for (float[] samples : overlap) Arrays.fill(samples, 0f);
+    }
+
+    // Source frame position of the next output frame.
+    public double getPosition() {
+        return headPosition * pitch;
+    }
+
+    public void process(float[][] out, int frames) {
+        int done = 0;
+        while (done < frames) {
+            if (fifoLength == 0) {
+                step();
+                continue;
+            }
+            int n = Math.min(frames - done, fifoLength);
+            for (int ch = 0; ch < channels; ch++) {
+                System.arraycopy(fifo[ch], fifoStart, out[ch], done, n);
+            }
+            fifoStart += n;
+            fifoLength -= n;
+            headPosition += n * tempo / pitch;
+            done += n;
+        }
+    }
+
+    private void step() {
+        double stride = hop * tempo / pitch;
+        long nominal = (long) Math.floor(center);
+        long regionStart = nominal - search - hop;
+        read(regionStart, region, region[0].length);
+
+        int offset = search;
+        if (primed) {
+            read(previous, target, hop);
+            offset = bestOffset();
+        }
+        long chosen = regionStart + offset + hop;
+
+        for (int ch = 0; ch < channels; ch++) {
+            float[] acc = overlap[ch];
+            float[] in = region[ch];
+            for (int i = 0; i < window; i++) {
+                acc[i] += hann[i] * in[offset + i];
+            }
+        }
+        // The first half is now complete: before the first window it only held the rising half,
+        // so it is dropped rather than faded in.
+        if (primed) {
+            for (int ch = 0; ch < channels; ch++) {
+                System.arraycopy(overlap[ch], 0, fifo[ch], 0, hop);
+            }
+            fifoStart = 0;
+            fifoLength = hop;
+            headPosition = center - stride;
+        }
+        for (float[] acc : overlap) {
+            System.arraycopy(acc, hop, acc, 0, hop);
+            Arrays.fill(acc, hop, window, 0f);
+        }
+        previous = chosen;
+        center += stride;
+        primed = true;
+    }
+
+    // Offset into region whose first half best matches the target, by normalized
+    // cross-correlation of the channel sums.
+    private int bestOffset() {
+        mixDown(region, regionMono, region[0].length);
+        mixDown(target, targetMono, hop);
+        double energy = 0;
+        for (int i = 0; i < hop; i++) {
+            energy += regionMono[i] * regionMono[i];
+        }
+        int best = search;
+        double bestScore = Double.NEGATIVE_INFINITY;
+        for (int offset = 0; offset <= 2 * search; offset++) {
+            float dot = 0f;
+            for (int i = 0; i < hop; i++) {
+                dot += targetMono[i] * regionMono[offset + i];
+            }
+            double score = dot / Math.sqrt(energy + 1e-9);
+            if (score > bestScore) {
+                bestScore = score;
+                best = offset;
+            }
+            float leaving = regionMono[offset];
+            float entering = regionMono[offset + hop];
+            energy = Math.max(0, energy - leaving * leaving + entering * entering);
+        }
+        return best;
+    }
+
+    private void mixDown(float[][] src, float[] dest, int frames) {
+        System.arraycopy(src[0], 0, dest, 0, frames);
+        for (int ch = 1; ch < channels; ch++) {
+            float[] samples = src[ch];
+            for (int i = 0; i < frames; i++) dest[i] += samples[i];
+        }
+    }
+
+    // Reads frames of the pitch-shifted view starting at start; frames before the start of the
+    // source read as silence.
+    private void read(long start, float[][] dest, int frames) {
+        int silent = (int) Math.min(frames, Math.max(0, -start));
+        for (float[] samples : dest) Arrays.fill(samples, 0, silent, 0f);
+        if (silent == frames) return;
+        pitchShifter.setSpeed(pitch);
+        pitchShifter.seek(start + silent);
+        if (silent == 0) {
+            pitchShifter.process(dest, frames);
+            return;
+        }
+        pitchShifter.process(scratch, frames - silent);
+        for (int ch = 0; ch < channels; ch++) {
+            System.arraycopy(scratch[ch], 0, dest[ch], silent, frames - silent);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package ghibli;
+
+import java.io.File;
+import java.util.concurrent.atomic.AtomicReference;
+
+// One stem of a mix: a source with its own speed, volume and effects. Settings are published as
+// immutable snapshots, as with PlaybackEngine, so the UI can retarget a track while it plays.
+class Track {
+    private final File file;
+    private final SampleSource source;
+    private final AtomicReference<EffectSettings> settings;
+
+    public Track(File file, SampleSource source, EffectSettings settings) {
+        this.file = file;
+        this.source = source;
+        this.settings = new AtomicReference<>(settings);
+    }
+
+    public String getName() {
+        return file.getName();
+    }
+
+    // The file the source reads, which exports must not overwrite.
+    public File getFile() {
+        return file;
+    }
+
+    public SampleSource getSource() {
+        return source;
+    }
+
+    public EffectSettings getSettings() {
+        return settings.get();
+    }
+
+    // Lock-free: safe to call from the EDT while the mix plays.
+    public void setSettings(EffectSettings newSettings) {
+        settings.set(newSettings);
+    }
+
+    @Override
+    public String toString() {
+        return getName();
+    }
+}
@@ -0,0 +1,150 @@
+package ghibli;
+
+import java.nio.ByteOrder;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+// Vector API kernels at the preferred (widest) shape. Mono and stereo PCM are vectorized; other
+// channel counts, and every loop tail shorter than a vector, use the scalar code. Only loaded
+// reflectively by SampleKernels, so the editor still runs without --add-modules.
+class VectorKernels extends ScalarKernels {
+    private static final VectorSpecies<Float> F = FloatVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> I = IntVector.SPECIES_PREFERRED;
+    // Half-width shorts with the same lane count as F, for mono PCM.
+    private static final VectorSpecies<Short> S = VectorSpecies.of(short.class, VectorShape.forBitSize(F.vectorBitSize() / 2));
+    private static final ByteOrder LE = ByteOrder.LITTLE_ENDIAN;
+    private static final float BIAS = 12582912f;  // 1.5 * 2^23
+    private static final int BIAS_BITS = Float.floatToIntBits(BIAS);
+
+    private final FloatVector iota;
+
+    VectorKernels() {
+        // Without real vector registers the API falls back to slow Java loops.
+        if (F.length() < 4) throw new UnsupportedOperationException("no SIMD support");
+        float[] lanes = new float[F.length()];
+        for (int i = 0; i < lanes.length; i++) lanes[i] = i;
+        iota = FloatVector.fromArray(F, lanes, 0);
+    }
+
+    @Override
+    public void toFloat(byte[] src, int offset, float[][] dest, int destOffset, int frames) {
+        int bulk = F.loopBound(frames);
+        if (dest.length == 1) {
+            float[] out = dest[0];
+            for (int i = 0; i < bulk; i += F.length()) {
+                ShortVector s = ShortVector.fromByteArray(S, src, offset + i * 2, LE);
+                ((FloatVector) s.convertShape(VectorOperators.S2F, F, 0)).mul(TO_FLOAT).intoArray(out, destOffset + i);
+            }
+        } else if (dest.length == 2) {
+            // Each stereo frame is one little-endian int: left in the low half, right in the high.
+            float[] left = dest[0];
+            float[] right = dest[1];
+            for (int i = 0; i < bulk; i += I.length()) {
+                IntVector v = IntVector.fromByteArray(I, src, offset + i * 4, LE);
+                IntVector l = v.lanewise(VectorOperators.LSHL, 16).lanewise(VectorOperators.ASHR, 16);
+                IntVector r = v.lanewise(VectorOperators.ASHR, 16);
+                ((FloatVector) l.convert(VectorOperators.I2F, 0)).mul(TO_FLOAT).intoArray(left, destOffset + i);
+                ((FloatVector) r.convert(VectorOperators.I2F, 0)).mul(TO_FLOAT).intoArray(right, destOffset + i);
+            }
+        } else {
+            bulk = 0;
+        }
+        int frameSize = dest.length * 2;
+        super.toFloat(src, offset + bulk * frameSize, dest, destOffset + bulk, frames - bulk);
+    }
+
+    // Same truncation and saturation as the scalar (int) cast and clamp, without the F2I cast,
+    // which JDK 17 does not compile to a vector instruction. Adding 1.5 * 2^23 to |x| leaves
+    // round(|x|) in the low mantissa bits; a rounded-up value is stepped back to truncate, and
+    // negative samples are mirrored around the bias. NaN maps to the bias itself, i.e. 0. The
+    // conversion is written out in each loop because C2 will not inline a helper this size, and
+    // an out-of-line call boxes every vector.
+    @Override
+    public void toPcm16(float[][] src, int srcOffset, int frames, byte[] dest, int offset) {
+        int bulk = F.loopBound(frames);
+        if (src.length == 1) {
+            float[] in = src[0];
+            for (int i = 0; i < bulk; i += F.length()) {
+                FloatVector x = FloatVector.fromArray(F, in, srcOffset + i).mul(32768f).max(-32768f).min(32767f);
+                FloatVector a = x.abs();
+                FloatVector q = a.add(BIAS);
+                q = q.sub(1f, q.sub(BIAS).compare(VectorOperators.GT, a));
+                q = q.blend(q.neg().add(2 * BIAS), x.compare(VectorOperators.LT, 0f));
+                q = q.blend(BIAS, x.compare(VectorOperators.NE, x));
+                IntVector v = q.reinterpretAsInts().sub(BIAS_BITS);
+                ((ShortVector) v.convertShape(VectorOperators.I2S, S, 0)).intoByteArray(dest, offset + i * 2, LE);
+            }
+        } else if (src.length == 2) {
+            float[] left = src[0];
+            float[] right = src[1];
+            for (int i = 0; i < bulk; i += F.length()) {
+                FloatVector xl = FloatVector.fromArray(F, left, srcOffset + i).mul(32768f).max(-32768f).min(32767f);
+                FloatVector xr = FloatVector.fromArray(F, right, srcOffset + i).mul(32768f).max(-32768f).min(32767f);
+                FloatVector al = xl.abs();
+                FloatVector ar = xr.abs();
+                FloatVector ql = al.add(BIAS);
+                FloatVector qr = ar.add(BIAS);
+                ql = ql.sub(1f, ql.sub(BIAS).compare(VectorOperators.GT, al));
+                qr = qr.sub(1f, qr.sub(BIAS).compare(VectorOperators.GT, ar));
+                ql = ql.blend(ql.neg().add(2 * BIAS), xl.compare(VectorOperators.LT, 0f));
+                qr = qr.blend(qr.neg().add(2 * BIAS), xr.compare(VectorOperators.LT, 0f));
+                ql = ql.blend(BIAS, xl.compare(VectorOperators.NE, xl));
+                qr = qr.blend(BIAS, xr.compare(VectorOperators.NE, xr));
+                IntVector l = ql.reinterpretAsInts().sub(BIAS_BITS);
+                IntVector r = qr.reinterpretAsInts().sub(BIAS_BITS);
+                l.and(0xffff).or(r.lanewise(VectorOperators.LSHL, 16)).intoByteArray(dest, offset + i * 4, LE);
+            }
+        } else {
+            bulk = 0;
+        }
+        int frameSize = src.length * 2;
+        super.toPcm16(src, srcOffset + bulk, frames - bulk, dest, offset + bulk * frameSize);
+    }
+
+    @Override
+    public void scale(float[] samples, int from, int to, float gain) {
+        int i = from;
+        for (int end = from + F.loopBound(to - from); i < end; i += F.length()) {
+            FloatVector.fromArray(F, samples, i).mul(gain).intoArray(samples, i);
+        }
+        super.scale(samples, i, to, gain);
+    }
+
+    @Override
+    public void scaleRamp(float[] samples, int from, int to, float start, float step) {
+        int i = from;
+        for (int end = from + F.loopBound(to - from); i < end; i += F.length()) {
+            FloatVector g = iota.add(i + 1).mul(step).add(start);
+            FloatVector.fromArray(F, samples, i).mul(g).intoArray(samples, i);
+        }
+        super.scaleRamp(samples, i, to, start, step);
+    }
+
+    @Override
+    public void clip(float[] samples, int from, int to, float threshold) {
+        int i = from;
+        for (int end = from + F.loopBound(to - from); i < end; i += F.length()) {
+            FloatVector.fromArray(F, samples, i).min(threshold).max(-threshold).intoArray(samples, i);
+        }
+        super.clip(samples, i, to, threshold);
+    }
+
+    @Override
+    public void clipRamp(float[] samples, int from, int to, float start, float step) {
+        int i = from;
+        for (int end = from + F.loopBound(to - from); i < end; i += F.length()) {
+            FloatVector t = iota.add(i + 1).mul(step).add(start);
+            FloatVector.fromArray(F, samples, i).min(t).max(t.neg()).intoArray(samples, i);
+        }
+        super.clipRamp(samples, i, to, start, step);
+    }
+
+    @Override
+    public String getName() {
+        return "vector (" + F.vectorBitSize() + "-bit)";
+    }
+}
@@ -0,0 +1,45 @@
+package ghibli;
+
+// Linear gain stage.
+class VolumeProcessor implements Processor {
+    private static final SampleKernels KERNELS = SampleKernels.INSTANCE;
+
+    private float gain;
+    private float targetGain;
+
+    public VolumeProcessor(EffectSettings settings) {
+        this.gain = (float) settings.volume;
+        this.targetGain = gain;
+    }
+
+    @Override
+    public void update(EffectSettings settings) {
+        targetGain = (float) settings.volume;
+    }
+
+    @Override
+    public void process(float[][] block, int frames) {
+        float g = gain;
+        if (g == targetGain) {
+            for (float[] samples : block) {
+                KERNELS.scale(samples, 0, frames, g);
+            }
+            return;
+        }
+        float step = (targetGain - g) / frames;
+        for (float[] samples : block) {
+            KERNELS.scaleRamp(samples, 0, frames, g, step);
+        }
+        gain = targetGain;
+    }
+
+    @Override
+    public void reset() {
+        gain = targetGain;
+    }
+
+    @Override
+    public boolean isStateless() {
+        return true;
+    }
+}
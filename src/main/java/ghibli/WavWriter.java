@@ -0,0 +1,153 @@
+package ghibli;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import javax.sound.sampled.AudioFormat;
+
+// Streaming WAV writer. PCM is staged in a pooled direct buffer and handed to a FileChannel in
+// large sequential writes, so memory use is constant however long the render runs. The header
+// goes out with placeholder sizes and is patched on close, so the length need not be known up
+// front. A 28-byte JUNK chunk is reserved after "WAVE"; if the file outgrows 32-bit RIFF sizes it
+// is rewritten in place as the ds64 chunk of an RF64 file (EBU Tech 3306).
+class WavWriter extends OutputStream {
+    public static final int HEADER_SIZE = 80;
+    static final long MAX_RIFF_SIZE = 0xffffffffL;
+    private static final int BUFFER_SIZE = 1 << 18;
+    private static final ArrayBlockingQueue<ByteBuffer> POOL = new ArrayBlockingQueue<>(8);
+
+    private final FileChannel channel;
+    private final AudioFormat format;
+    private final long maxRiffSize;
+    private ByteBuffer buffer;
+    private long dataLength;
+
+    private WavWriter(FileChannel channel, AudioFormat format, long maxRiffSize) {
+        this.channel = channel;
+        this.format = format;
+        this.maxRiffSize = maxRiffSize;
+        ByteBuffer pooled = POOL.poll();
+        this.buffer = pooled != null ? pooled : ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+
+    // Creates or truncates path. format must be PCM; 16-bit little-endian is what the renderers emit.
+    public static WavWriter create(Path path, AudioFormat format) throws IOException {
+        return create(path, format, MAX_RIFF_SIZE);
+    }
+
+    // maxRiffSize lowers the RF64 switch-over point so it can be exercised without 4 GB of output.
+    static WavWriter create(Path path, AudioFormat format, long maxRiffSize) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        WavWriter writer = new WavWriter(channel, format, maxRiffSize);
+        try {
+            writer.writeHeader(0);
+            channel.position(HEADER_SIZE);
+        } catch (IOException e) {
+            writer.release();
+            channel.close();
+            throw e;
+        }
+        return writer;
+    }
+
+    public long getDataLength() {
+        return dataLength;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (!buffer.hasRemaining()) drain();
+        buffer.put((byte) b);
+        dataLength++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        dataLength += len;
+        while (len > 0) {
+            if (!buffer.hasRemaining()) drain();
+            int n = Math.min(len, buffer.remaining());
+            buffer.put(b, off, n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        drain();
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    // Flushes, pads the data chunk to an even length and patches the header. A writer closed after
+    // a failed render still leaves a valid file holding whatever was written.
+    @Override
+    public void close() throws IOException {
+        if (buffer == null) return;
+        try {
+            if ((dataLength & 1) != 0) {
+                if (!buffer.hasRemaining()) drain();
+                buffer.put((byte) 0);
+            }
+            drain();
+            writeHeader(dataLength);
+        } finally {
+            release();
+            channel.close();
+        }
+    }
+
+    private void release() {
+        buffer.clear();
+        POOL.offer(buffer);
+        buffer = null;
+    }
+
+    private void writeHeader(long dataLength) throws IOException {
+        long riffSize = HEADER_SIZE - 8 + dataLength + (dataLength & 1);
+        boolean rf64 = riffSize > maxRiffSize;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.put(ascii(rf64 ? "RF64" : "RIFF"));
+        header.putInt((int) (rf64 ? MAX_RIFF_SIZE : riffSize));
+        header.put(ascii("WAVE"));
+        header.put(ascii(rf64 ? "ds64" : "JUNK"));
+        header.putInt(28);
+        header.putLong(rf64 ? riffSize : 0);
+        header.putLong(rf64 ? dataLength : 0);
+        header.putLong(rf64 ? dataLength / format.getFrameSize() : 0);
+        header.putInt(0); // no table entries
+        header.put(ascii("fmt "));
+        header.putInt(16);
+        header.putShort((short) 1); // PCM
+        header.putShort((short) format.getChannels());
+        header.putInt((int) format.getSampleRate());
+        header.putInt((int) format.getSampleRate() * format.getFrameSize());
+        header.putShort((short) format.getFrameSize());
+        header.putShort((short) format.getSampleSizeInBits());
+        header.put(ascii("data"));
+        header.putInt((int) (rf64 ? MAX_RIFF_SIZE : dataLength));
+        header.flip();
+        long pos = 0;
+        while (header.hasRemaining()) {
+            pos += channel.write(header, pos);
+        }
+    }
+
+    private static byte[] ascii(String id) {
+        return id.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,91 @@
+package ghibli;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import javax.sound.sampled.AudioFormat;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+// The parallel export must produce exactly the bytes of the serial RenderEngine path, whatever
+// the chunk size and however the chunks land on the workers.
+class ParallelRendererTest {
+    private static final AudioFormat FORMAT = new AudioFormat(44100, 16, 2, true, false);
+    private static final int FRAMES = 3 * 44100 + 123;  // not a multiple of any chunk or block size
+
+    private static SampleSource source;
+    private static ForkJoinPool pool;
+
+    @BeforeAll
+    static void setUp() {
+        // A 440 Hz tone with noise on top, so every stage has audible work to do.
+        Random random = new Random(42);
+        byte[] pcm = new byte[FRAMES * FORMAT.getFrameSize()];
+        for (int i = 0; i < FRAMES; i++) {
+            for (int ch = 0; ch < 2; ch++) {
+                int sample = (int) (12000 * Math.sin(2 * Math.PI * 440 * i / 44100.0 + ch) + random.nextGaussian() * 2000);
+                int offset = (i * 2 + ch) * 2;
+                pcm[offset] = (byte) sample;
+                pcm[offset + 1] = (byte) (sample >> 8);
+            }
+        }
+        source = new ByteArraySampleSource(pcm, FORMAT);
+        pool = new ForkJoinPool(4);
+    }
+
+    @AfterAll
+    static void tearDown() {
+        pool.shutdown();
+    }
+
+    private static EffectSettings settings(double speed, boolean echo, boolean distortion, boolean lowPass,
+                                           Resampler.Quality quality) {
+        return new EffectSettings(speed, 0.8, echo, 120, 0.6, distortion, 0.3, lowPass, 1500,
+                false, 0.3, null, quality, false, 0);
+    }
+
+    private static byte[] renderSerial(EffectSettings settings) throws IOException {
+        long frames = RenderEngine.getOutputFrameCount(source, settings.speed);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new RenderEngine(source, settings, RenderEngine.DEFAULT_BLOCK_SIZE).renderTo(out, frames, RenderMonitor.NONE);
+        return out.toByteArray();
+    }
+
+    private static byte[] renderParallel(EffectSettings settings, int chunkFrames) throws IOException {
+        long frames = RenderEngine.getOutputFrameCount(source, settings.speed);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new ParallelRenderer(source, settings, chunkFrames, pool).renderTo(out, frames, RenderMonitor.NONE);
+        return out.toByteArray();
+    }
+
+    private static void assertSameBytes(EffectSettings settings) throws IOException {
+        byte[] serial = renderSerial(settings);
+        assertEquals(RenderEngine.getOutputFrameCount(source, settings.speed) * FORMAT.getFrameSize(), serial.length);
+        for (int chunkFrames : new int[] {1000, 4096, ParallelRenderer.DEFAULT_CHUNK_FRAMES}) {
+            assertArrayEquals(serial, renderParallel(settings, chunkFrames), "chunk size " + chunkFrames);
+        }
+    }
+
+    @Test
+    void unitySpeedWithoutEffects() throws IOException {
+        assertSameBytes(settings(1.0, false, false, false, Resampler.Quality.LINEAR));
+    }
+
+    @Test
+    void resampledWithStatelessEffects() throws IOException {
+        assertSameBytes(settings(1.37, false, true, false, Resampler.Quality.LINEAR));
+        assertSameBytes(settings(0.75, false, true, false, Resampler.Quality.CUBIC));
+        assertSameBytes(settings(1.5, false, false, false, Resampler.Quality.SINC));
+    }
+
+    @Test
+    void statefulEffectsRunInOrder() throws IOException {
+        assertSameBytes(settings(1.25, true, true, true, Resampler.Quality.SINC));
+        assertSameBytes(settings(0.9, true, false, true, Resampler.Quality.LINEAR));
+    }
+}
@@ -0,0 +1,153 @@
+package ghibli;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+// Edits are checked against the source frame behind every edited frame, which is what
+// EditedSampleSource reads.
+class PieceTableTest {
+    private static long[] frames(PieceTable table) {
+        long[] frames = new long[(int) table.getFrameCount()];
+        for (int i = 0; i < frames.length; i++) {
+            frames[i] = table.toSourceFrame(i);
+        }
+        return frames;
+    }
+
+    private static long[] range(long from, long to) {
+        long[] frames = new long[(int) (to - from)];
+        for (int i = 0; i < frames.length; i++) {
+            frames[i] = from + i;
+        }
+        return frames;
+    }
+
+    private static long[] concat(long[]... parts) {
+        int length = 0;
+        for (long[] part : parts) length += part.length;
+        long[] all = new long[length];
+        int at = 0;
+        for (long[] part : parts) {
+            System.arraycopy(part, 0, all, at, part.length);
+            at += part.length;
+        }
+        return all;
+    }
+
+    @Test
+    void uneditedTableIsOnePiece() {
+        PieceTable table = PieceTable.of(100);
+        assertEquals(100, table.getFrameCount());
+        assertEquals(1, table.getPieceCount());
+        assertArrayEquals(range(0, 100), frames(table));
+        assertEquals(0, PieceTable.of(0).getPieceCount());
+    }
+
+    @Test
+    void sliceKeepsSourceFrames() {
+        PieceTable table = PieceTable.of(100);
+        assertArrayEquals(range(10, 30), frames(table.slice(10, 30)));
+        assertEquals(0, table.slice(30, 10).getFrameCount());
+        assertArrayEquals(range(90, 100), frames(table.slice(90, 200)));  // clamped
+
+        PieceTable edited = table.delete(40, 60);
+        assertArrayEquals(concat(range(35, 40), range(60, 65)), frames(edited.slice(35, 45)));
+        assertEquals(2, edited.slice(35, 45).getPieceCount());
+    }
+
+    @Test
+    void deleteAndInsert() {
+        PieceTable table = PieceTable.of(100);
+        PieceTable deleted = table.delete(20, 50);
+        assertEquals(70, deleted.getFrameCount());
+        assertEquals(2, deleted.getPieceCount());
+        assertArrayEquals(concat(range(0, 20), range(50, 100)), frames(deleted));
+
+        PieceTable clip = table.slice(80, 90);
+        PieceTable inserted = deleted.insert(5, clip);
+        assertArrayEquals(concat(range(0, 5), range(80, 90), range(5, 20), range(50, 100)), frames(inserted));
+        assertEquals(4, inserted.getPieceCount());
+        assertEquals(inserted.getFrameCount(), inserted.insert(999, PieceTable.of(0)).getFrameCount());
+
+        assertEquals(100, table.getFrameCount());  // the original is untouched
+        assertArrayEquals(range(0, 100), frames(table));
+    }
+
+    @Test
+    void cutAndPasteBackMergesPieces() {
+        PieceTable table = PieceTable.of(100);
+        PieceTable clip = table.slice(30, 60);
+        PieceTable restored = table.delete(30, 60).insert(30, clip);
+        assertEquals(1, restored.getPieceCount());
+        assertArrayEquals(range(0, 100), frames(restored));
+    }
+
+    @Test
+    void pieceLookup() {
+        // The second delete is in edited frames: source 0-10, 20-40, 50-100.
+        PieceTable table = PieceTable.of(100).delete(10, 20).delete(30, 40);
+        assertEquals(3, table.getPieceCount());
+        assertEquals(0, table.findPiece(0));
+        assertEquals(0, table.findPiece(9));
+        assertEquals(1, table.findPiece(10));
+        assertEquals(1, table.findPiece(29));
+        assertEquals(2, table.findPiece(30));
+        assertEquals(2, table.findPiece(79));
+        assertEquals(30, table.getOffset(2));
+        assertEquals(50, table.getSourceStart(2));
+        assertEquals(50, table.getLength(2));
+        assertEquals(55, table.toSourceFrame(35));
+    }
+
+    @Test
+    void undoAndRedo() {
+        PieceTable original = PieceTable.of(100);
+        EditHistory history = new EditHistory(original, 10);
+        assertFalse(history.canUndo());
+        assertFalse(history.canRedo());
+
+        PieceTable cut = original.delete(0, 10);
+        history.apply(cut);
+        PieceTable trimmed = cut.slice(0, 50);
+        history.apply(trimmed);
+        assertSame(trimmed, history.getCurrent());
+
+        assertSame(cut, history.undo());
+        assertSame(original, history.undo());
+        assertFalse(history.canUndo());
+        assertSame(original, history.undo());  // nothing left to undo
+        assertSame(cut, history.redo());
+        assertSame(trimmed, history.redo());
+        assertFalse(history.canRedo());
+
+        history.undo();
+        PieceTable pasted = cut.insert(0, original.slice(0, 10));
+        history.apply(pasted);
+        assertFalse(history.canRedo());  // a new edit drops the undone one
+        assertArrayEquals(range(0, 100), frames(history.getCurrent()));
+        assertSame(cut, history.undo());
+    }
+
+    @Test
+    void historyKeepsOnlyTheLimit() {
+        PieceTable table = PieceTable.of(100);
+        EditHistory history = new EditHistory(table, 3);
+        for (int i = 0; i < 5; i++) {
+            table = table.delete(0, 1);
+            history.apply(table);
+        }
+        int undone = 0;
+        while (history.canUndo()) {
+            history.undo();
+            undone++;
+        }
+        assertEquals(3, undone);
+        assertEquals(98, history.getCurrent().getFrameCount());  // the two oldest edits can't be undone
+        assertTrue(history.canRedo());
+    }
+}
@@ -0,0 +1,119 @@
+package ghibli;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// Header layout on both sides of the RF64 switch-over, which a lowered maxRiffSize moves from
+// 4 GB down to a few bytes.
+class WavWriterTest {
+    private static final AudioFormat FORMAT = new AudioFormat(48000, 16, 2, true, false);
+
+    @TempDir
+    Path dir;
+
+    private static byte[] pcm(int frames) {
+        byte[] data = new byte[frames * FORMAT.getFrameSize()];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 31 + 7);
+        }
+        return data;
+    }
+
+    private Path write(String name, byte[] data, long maxRiffSize) throws IOException {
+        Path path = dir.resolve(name);
+        try (WavWriter out = WavWriter.create(path, FORMAT, maxRiffSize)) {
+            out.write(data, 0, data.length);
+        }
+        return path;
+    }
+
+    private static String id(ByteBuffer header, int offset) {
+        byte[] bytes = new byte[4];
+        header.get(offset, bytes);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    private static ByteBuffer header(Path path) throws IOException {
+        byte[] bytes = Files.readAllBytes(path);
+        return ByteBuffer.wrap(bytes, 0, WavWriter.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    @Test
+    void smallFileIsPlainRiff() throws IOException {
+        byte[] data = pcm(100);
+        ByteBuffer header = header(write("small.wav", data, WavWriter.MAX_RIFF_SIZE));
+        assertEquals("RIFF", id(header, 0));
+        assertEquals(WavWriter.HEADER_SIZE - 8 + data.length, header.getInt(4));
+        assertEquals("WAVE", id(header, 8));
+        assertEquals("JUNK", id(header, 12));
+        assertEquals("fmt ", id(header, 48));
+        assertEquals("data", id(header, 72));
+        assertEquals(data.length, header.getInt(76));
+    }
+
+    @Test
+    void fileOverMaxRiffSizeIsRf64() throws IOException {
+        byte[] data = pcm(1000);
+        long riffSize = WavWriter.HEADER_SIZE - 8 + data.length;
+        ByteBuffer header = header(write("large.wav", data, riffSize - 1));
+        assertEquals("RF64", id(header, 0));
+        assertEquals(-1, header.getInt(4));  // 0xFFFFFFFF: see ds64
+        assertEquals("WAVE", id(header, 8));
+        assertEquals("ds64", id(header, 12));
+        assertEquals(28, header.getInt(16));
+        assertEquals(riffSize, header.getLong(20));
+        assertEquals(data.length, header.getLong(28));
+        assertEquals(1000, header.getLong(36));
+        assertEquals(0, header.getInt(44));  // no table entries
+        assertEquals("fmt ", id(header, 48));
+        assertEquals(FORMAT.getChannels(), header.getShort(58));
+        assertEquals((int) FORMAT.getSampleRate(), header.getInt(60));
+        assertEquals(16, header.getShort(70));
+        assertEquals("data", id(header, 72));
+        assertEquals(-1, header.getInt(76));
+    }
+
+    @Test
+    void fileAtMaxRiffSizeStaysRiff() throws IOException {
+        byte[] data = pcm(1000);
+        ByteBuffer header = header(write("edge.wav", data, WavWriter.HEADER_SIZE - 8 + data.length));
+        assertEquals("RIFF", id(header, 0));
+    }
+
+    @Test
+    void oddLengthDataIsPadded() throws IOException {
+        byte[] data = pcm(10);
+        Path path = dir.resolve("odd.wav");
+        try (WavWriter out = WavWriter.create(path, FORMAT, 0)) {
+            out.write(data, 0, data.length - 1);
+        }
+        ByteBuffer header = header(path);
+        assertEquals(WavWriter.HEADER_SIZE + data.length, Files.size(path));
+        assertEquals(WavWriter.HEADER_SIZE - 8 + data.length, header.getLong(20));
+        assertEquals(data.length - 1, header.getLong(28));
+    }
+
+    @Test
+    void rf64ReadsBackThroughMappedSource() throws IOException, UnsupportedAudioFileException {
+        byte[] data = pcm(1000);
+        Path path = write("roundtrip.wav", data, 0);
+        try (SampleSource source = MappedSampleSource.open(path.toFile())) {
+            assertEquals(1000, source.getFrameCount());
+            assertEquals(FORMAT.getSampleRate(), source.getFormat().getSampleRate());
+            byte[] read = new byte[data.length];
+            assertEquals(1000, source.read(0, read, 0, 1000));
+            assertArrayEquals(data, read);
+        }
+    }
+}